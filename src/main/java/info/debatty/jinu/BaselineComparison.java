@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+/**
+ * Comparison of a test, param value and metric with a baseline (the results
+ * of a previous run of the case): relative change of the mean, effect size
+ * (Cohen's d), significance (two-sided Welch t-test and Mann-Whitney U
+ * test) and bootstrap interval of the change of the median.
+ *
+ * @author Thibault Debatty
+ */
+public final class BaselineComparison {
+
+    private final TestFactory test;
+    private final double param_value;
+    private final Metric metric;
+    private final int baseline_size;
+    private final int size;
+    private final double baseline_mean;
+    private final double mean;
+    private final double effect_size;
+    private final double p_value;
+    private final SampleComparison comparison;
+    private final boolean significant;
+    private final boolean regression;
+
+    /**
+     *
+     * @param key test and param value
+     * @param metric
+     * @param baseline_sample values of the metric in the baseline
+     * @param sample values of the metric in this run
+     * @param threshold relative increase of the mean above which a
+     * significant change is a regression (NaN if the metric is not gated)
+     * @param confidence
+     * @param seed seed of the bootstrap
+     */
+    BaselineComparison(
+            final FactoryAndValue key,
+            final Metric metric,
+            final double[] baseline_sample,
+            final double[] sample,
+            final double threshold,
+            final double confidence,
+            final long seed) {
+
+        this.test = key.getTest();
+        this.param_value = key.getValue();
+        this.metric = metric;
+        this.baseline_size = baseline_sample.length;
+        this.size = sample.length;
+        this.baseline_mean = StatUtils.mean(baseline_sample);
+        this.mean = StatUtils.mean(sample);
+        this.effect_size = cohensD(baseline_sample, sample);
+        this.comparison =
+                new SampleComparison(baseline_sample, sample, seed);
+        this.p_value = comparison.getTTestPValue();
+        this.significant = p_value < 1 - confidence;
+        this.regression = significant && getChange() > threshold;
+    }
+
+    private static double cohensD(
+            final double[] baseline_sample, final double[] sample) {
+        int df = baseline_sample.length + sample.length - 2;
+        if (df < 1) {
+            return Double.NaN;
+        }
+
+        double pooled_sd = Math.sqrt(
+                ((baseline_sample.length - 1)
+                        * StatUtils.variance(baseline_sample)
+                + (sample.length - 1) * StatUtils.variance(sample)) / df);
+        double difference =
+                StatUtils.mean(sample) - StatUtils.mean(baseline_sample);
+        if (pooled_sd == 0) {
+            return difference == 0 ? 0 : Math.signum(difference)
+                    * Double.POSITIVE_INFINITY;
+        }
+        return difference / pooled_sd;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public TestFactory getTest() {
+        return test;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double getParamValue() {
+        return param_value;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Number of runs in the baseline.
+     * @return
+     */
+    public int getBaselineSize() {
+        return baseline_size;
+    }
+
+    /**
+     * Number of runs in this case.
+     * @return
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double getBaselineMean() {
+        return baseline_mean;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Relative change of the mean (0.1 means 10% higher than the baseline).
+     * @return
+     */
+    public double getChange() {
+        if (baseline_mean == mean) {
+            return 0;
+        }
+        return mean / baseline_mean - 1;
+    }
+
+    /**
+     * Cohen's d: difference of the means, divided by the pooled standard
+     * deviation.
+     * @return
+     */
+    public double getEffectSize() {
+        return effect_size;
+    }
+
+    /**
+     * P-value of the two-sided Welch t-test (NaN if either sample has less
+     * than 2 runs).
+     * @return
+     */
+    public double getPValue() {
+        return p_value;
+    }
+
+    /**
+     * P-value of the two-sided Mann-Whitney U test, which is more robust
+     * than the t-test for skewed metrics like runtimes.
+     * @return
+     */
+    public double getMannWhitneyPValue() {
+        return comparison.getMannWhitneyPValue();
+    }
+
+    /**
+     * Median of this run minus median of the baseline.
+     * @return
+     */
+    public double getMedianChange() {
+        return comparison.getMedianDifference();
+    }
+
+    /**
+     * Lower bound of the bootstrap confidence interval of the change of the
+     * median.
+     * @return
+     */
+    public double getMedianChangeLow() {
+        return comparison.getMedianDifferenceLow();
+    }
+
+    /**
+     * Upper bound of the bootstrap confidence interval of the change of the
+     * median.
+     * @return
+     */
+    public double getMedianChangeHigh() {
+        return comparison.getMedianDifferenceHigh();
+    }
+
+    /**
+     * Check if the change is significant at the configured confidence.
+     * @return
+     */
+    public boolean isSignificant() {
+        return significant;
+    }
+
+    /**
+     * Check if this metric is gated and increased significantly by more
+     * than the threshold.
+     * @return
+     */
+    public boolean isRegression() {
+        return regression;
+    }
+
+    @Override
+    public String toString() {
+        return test.newInstance().getClass().getName() + " " + param_value
+                + " " + metric + ": " + baseline_mean + " to " + mean
+                + " (" + String.format("%+.1f%%", 100 * getChange())
+                + ", d = " + String.format("%.2f", effect_size)
+                + ", p = " + String.format("%.4f", p_value) + ")";
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a binary result file (written by {@link BinarySink}).
+ *
+ * The records are memory mapped (read-only) and decoded on demand, so that
+ * millions of results can be scanned without copying nor parsing the file.
+ * Files larger than 2GB are mapped in several chunks. A truncated last
+ * record (if the JVM that wrote the file crashed) is ignored.
+ *
+ * @author Thibault Debatty
+ */
+public final class BinaryReader {
+
+    private static final int INT_BYTES = 4;
+    private static final int LONG_BYTES = 8;
+    private static final int DOUBLE_BYTES = 8;
+    private static final int PARAM_OFFSET = 4;
+    private static final int ITERATION_OFFSET = 8;
+    private static final int METRICS_OFFSET = 12;
+    private static final int WALL_TIME = 0;
+    private static final int CPU_TIME = 1;
+    private static final int USER_TIME = 2;
+    private static final int ALLOCATED = 3;
+    private static final int GC_COUNT = 4;
+    private static final int GC_TIME = 5;
+    private static final int OPERATIONS = 6;
+    private static final double NANOS_PER_MILLI = 1E6;
+    private static final String SEPARATOR = ";\t";
+
+    private final String filename;
+    private final RandomAccessFile file;
+    private final String case_name;
+    private final String case_id;
+    private final String description;
+    private final String[] tests;
+    private final double[] param_values;
+    private final String[] columns;
+    private final int values_count;
+    private final int record_bytes;
+    private final long size;
+    private final int chunk_records;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Open and map the file.
+     * @param filename
+     * @throws IOException if the file cannot be read, or is not a binary
+     * result file
+     */
+    public BinaryReader(final String filename) throws IOException {
+        this(filename, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Open and map the file, in chunks of at most chunk_bytes.
+     * @param filename
+     * @param chunk_bytes
+     * @throws IOException if the file cannot be read, or is not a binary
+     * result file
+     */
+    BinaryReader(final String filename, final int chunk_bytes)
+            throws IOException {
+        this.filename = filename;
+        file = new RandomAccessFile(filename, "r");
+        try {
+            if (file.length() < 2 * INT_BYTES
+                    || file.readInt() != BinarySink.MAGIC) {
+                throw new IOException(
+                        filename + " is not a binary result file");
+            }
+            int version = file.readInt();
+            if (version != BinarySink.VERSION) {
+                throw new IOException(
+                        filename + " has unsupported version " + version);
+            }
+
+            case_name = file.readUTF();
+            case_id = file.readUTF();
+            description = file.readUTF();
+            tests = new String[file.readInt()];
+            for (int i = 0; i < tests.length; i++) {
+                tests[i] = file.readUTF();
+            }
+            param_values = new double[file.readInt()];
+            for (int i = 0; i < param_values.length; i++) {
+                param_values[i] = file.readDouble();
+            }
+            values_count = file.readInt();
+            columns = new String[file.readInt()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = file.readUTF();
+            }
+
+            record_bytes = BinarySink.RECORD_BYTES
+                    + DOUBLE_BYTES * values_count;
+            long header_bytes = file.getFilePointer();
+            size = (file.length() - header_bytes) / record_bytes;
+
+            // each chunk holds an integer number of records
+            chunk_records = chunk_bytes / record_bytes;
+            chunks = new MappedByteBuffer[
+                    (int) ((size + chunk_records - 1) / chunk_records)];
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < chunks.length; i++) {
+                long records = Math.min(
+                        chunk_records, size - (long) i * chunk_records);
+                chunks[i] = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        header_bytes + (long) i * chunk_records * record_bytes,
+                        records * record_bytes);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     *
+     * @return name of the case that produced the results
+     */
+    public String getCaseName() {
+        return case_name;
+    }
+
+    /**
+     *
+     * @return id of the case that produced the results (like 20160101120000)
+     */
+    public String getCaseId() {
+        return case_id;
+    }
+
+    /**
+     *
+     * @return description of the case
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     *
+     * @return class names of the tests
+     */
+    public String[] getTests() {
+        return tests.clone();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double[] getParamValues() {
+        return param_values.clone();
+    }
+
+    /**
+     * Names of the columns of each record.
+     * @return
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     *
+     * @return number of values of each result
+     */
+    public int getValuesCount() {
+        return values_count;
+    }
+
+    /**
+     *
+     * @return number of results in the file
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     *
+     * @param row
+     * @return index of the test (in {@link #getTests()})
+     */
+    public int getTestIndex(final long row) {
+        return chunk(row).getInt(offset(row));
+    }
+
+    /**
+     *
+     * @param row
+     * @return class name of the test
+     */
+    public String getTest(final long row) {
+        return tests[getTestIndex(row)];
+    }
+
+    /**
+     *
+     * @param row
+     * @return
+     */
+    public double getParamValue(final long row) {
+        return param_values[chunk(row).getInt(offset(row) + PARAM_OFFSET)];
+    }
+
+    /**
+     *
+     * @param row
+     * @return iteration that produced the result, or -1 if unknown
+     */
+    public int getIteration(final long row) {
+        return chunk(row).getInt(offset(row) + ITERATION_OFFSET);
+    }
+
+    /**
+     *
+     * @param row
+     * @return
+     */
+    public long getWallTimeNanos(final long row) {
+        return getMetric(row, WALL_TIME);
+    }
+
+    /**
+     *
+     * @param row
+     * @return
+     */
+    public long getCpuTimeNanos(final long row) {
+        return getMetric(row, CPU_TIME);
+    }
+
+    /**
+     *
+     * @param row
+     * @return
+     */
+    public long getUserTimeNanos(final long row) {
+        return getMetric(row, USER_TIME);
+    }
+
+    /**
+     *
+     * @param row
+     * @return allocated bytes
+     */
+    public long getAllocated(final long row) {
+        return getMetric(row, ALLOCATED);
+    }
+
+    /**
+     *
+     * @param row
+     * @return
+     */
+    public long getGcCount(final long row) {
+        return getMetric(row, GC_COUNT);
+    }
+
+    /**
+     *
+     * @param row
+     * @return gc time (ms)
+     */
+    public long getGcTime(final long row) {
+        return getMetric(row, GC_TIME);
+    }
+
+    /**
+     *
+     * @param row
+     * @return number of operations of the run (1, except in throughput mode)
+     */
+    public long getOperations(final long row) {
+        return getMetric(row, OPERATIONS);
+    }
+
+    /**
+     *
+     * @param row
+     * @param index
+     * @return value returned by the test (NaN if the test returned fewer
+     * values)
+     */
+    public double getValue(final long row, final int index) {
+        if (index < 0 || index >= values_count) {
+            throw new IndexOutOfBoundsException("No value " + index);
+        }
+        return chunk(row).getDouble(
+                offset(row) + BinarySink.RECORD_BYTES + DOUBLE_BYTES * index);
+    }
+
+    /**
+     * Convert the file to CSV, in the format written by {@link CsvSink}
+     * (without the axes of parameter points, the host, and the warmup and
+     * failure counts, which are not in the binary file).
+     * @param csv_filename
+     * @throws IOException if the CSV file cannot be written
+     */
+    public void writeCsv(final String csv_filename) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(csv_filename), Charset.forName("UTF-8")));
+        try {
+            StringBuilder line = new StringBuilder();
+            line.append("## case ").append(case_id).append('\n')
+                    .append("## ").append(description).append('\n')
+                    .append("## test").append(SEPARATOR)
+                    .append("input value").append(SEPARATOR)
+                    .append("runtime (ms)").append(SEPARATOR)
+                    .append("cpu time (ms)").append(SEPARATOR)
+                    .append("user time (ms)").append(SEPARATOR)
+                    .append("allocated (bytes)").append(SEPARATOR)
+                    .append("gc count").append(SEPARATOR)
+                    .append("gc time (ms)").append(SEPARATOR)
+                    .append("operations").append(SEPARATOR);
+            for (int i = 0; i < values_count; i++) {
+                line.append("value").append(i).append(SEPARATOR);
+            }
+            line.append('\n');
+            writer.append(line);
+
+            for (long row = 0; row < size; row++) {
+                line.setLength(0);
+                line.append(getTest(row)).append(SEPARATOR)
+                        .append(getParamValue(row)).append(SEPARATOR)
+                        .append(getWallTimeNanos(row) / NANOS_PER_MILLI)
+                        .append(SEPARATOR)
+                        .append(getCpuTimeNanos(row) / NANOS_PER_MILLI)
+                        .append(SEPARATOR)
+                        .append(getUserTimeNanos(row) / NANOS_PER_MILLI)
+                        .append(SEPARATOR)
+                        .append(getAllocated(row)).append(SEPARATOR)
+                        .append(getGcCount(row)).append(SEPARATOR)
+                        .append(getGcTime(row)).append(SEPARATOR)
+                        .append(getOperations(row)).append(SEPARATOR);
+                for (int i = 0; i < values_count; i++) {
+                    line.append(getValue(row, i)).append(SEPARATOR);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Close the file. The mapped records are released when the reader is
+     * garbage collected.
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return filename + " (" + size + " results)";
+    }
+
+    private long getMetric(final long row, final int metric) {
+        return chunk(row).getLong(
+                offset(row) + METRICS_OFFSET + LONG_BYTES * metric);
+    }
+
+    private MappedByteBuffer chunk(final long row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("No row " + row);
+        }
+        return chunks[(int) (row / chunk_records)];
+    }
+
+    private int offset(final long row) {
+        return (int) (row % chunk_records) * record_bytes;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Appends each result to a compact binary file (buffered).
+ * The file can be read with {@link BinaryReader}.
+ *
+ * The file starts with a header: magic number (int), version (int), name of
+ * the case (UTF), id of the case (UTF), description of the case (UTF),
+ * number of tests (int) followed by
+ * their class names (UTF), number of param values (int) followed by the
+ * values (double), number of values returned by the tests (int), number of
+ * columns (int) followed by their names (UTF). Each result is then written
+ * as a fixed-width record: index of the test (int), index of the param value
+ * (int), iteration (int), wall clock time (ns), cpu time (ns), user time
+ * (ns), allocated bytes, gc count, gc time (ms) and number of operations
+ * (long), followed by the values (double).
+ *
+ * As the number of values is only known when the first result arrives, the
+ * header is written with the first result. Tests that return fewer values
+ * are padded with NaN.
+ *
+ * @author Thibault Debatty
+ */
+public class BinarySink implements ResultSink {
+
+    /**
+     * First bytes of a binary result file.
+     */
+    public static final int MAGIC = 0x4a494e55;
+
+    /**
+     * Version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Names of the columns of a record, before the values.
+     */
+    static final String[] COLUMNS = {
+        "test", "param", "iteration", "wall time (ns)", "cpu time (ns)",
+        "user time (ns)", "allocated (bytes)", "gc count", "gc time (ms)",
+        "operations"};
+
+    /**
+     * Size of a record, without the values.
+     */
+    static final int RECORD_BYTES = 68;
+
+    private static final double NANOS_PER_MILLI = 1E6;
+    private static final String SEPARATOR = ";\t";
+    private static final int CSV_COLUMNS = 9;
+    private static final int LEGACY_CSV_COLUMNS = 3;
+
+    private final String filename;
+    private DataOutputStream out;
+    private List<TestFactory> tests;
+    private String[] test_names;
+    private double[] param_values;
+    private String case_name;
+    private String case_id;
+    private String description;
+    private int values_count = -1;
+
+    /**
+     *
+     * @param filename
+     */
+    public BinarySink(final String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Create the file.
+     * @param report
+     * @throws IOException if the file cannot be created
+     */
+    public final void open(final CaseResult report) throws IOException {
+        tests = report.getTests();
+        test_names = new String[tests.size()];
+        for (int i = 0; i < test_names.length; i++) {
+            test_names[i] = tests.get(i).newInstance().getClass().getName();
+        }
+        param_values = report.getParamValues();
+        case_name = report.getCaseName();
+        case_id = report.getId();
+        description = report.getCaseDescription();
+        out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename)));
+    }
+
+    /**
+     * Append the result to the file.
+     * @param result
+     * @throws IOException if the result cannot be written
+     */
+    public final void write(final TestResult result) throws IOException {
+        if (values_count < 0) {
+            values_count = result.getValues().length;
+            writeHeader(
+                    out, case_name, case_id, description, test_names,
+                    param_values, values_count);
+        }
+
+        writeRecord(
+                out,
+                tests.indexOf(result.getFactory()),
+                indexOf(param_values, result.getParamValue()),
+                result.getIteration(),
+                new long[]{
+                    result.getWallTimeNanos(),
+                    result.getCpuTimeNanos(),
+                    result.getUserTimeNanos(),
+                    result.getAllocated(),
+                    result.getGcCount(),
+                    result.getGcTime(),
+                    result.getOperations()},
+                result.getValues(),
+                values_count);
+    }
+
+    /**
+     * Close the file.
+     * @param report
+     * @throws IOException if the file cannot be closed
+     */
+    public final void close(final CaseResult report) throws IOException {
+        if (values_count < 0) {
+            values_count = 0;
+            writeHeader(
+                    out, case_name, case_id, description, test_names,
+                    param_values, 0);
+        }
+        out.close();
+    }
+
+    /**
+     * Convert a CSV file (as written by {@link CsvSink}) to the binary
+     * format. The iteration of each result is unknown (-1), and the axes of
+     * parameter points and the host are not converted.
+     *
+     * Files written by older versions of jinu (with only the test, the
+     * input value and the runtime in ms before the values) are converted
+     * too: cpu time, user time, allocated bytes and gc are then 0, and each
+     * result counts as a single operation.
+     * @param csv_filename
+     * @param binary_filename
+     * @throws IOException if a file cannot be read or written, or if the CSV
+     * file is not valid
+     */
+    public static void fromCsv(
+            final String csv_filename, final String binary_filename)
+            throws IOException {
+
+        String case_id = "";
+        String description = "";
+        int values_count = 0;
+        int columns = CSV_COLUMNS;
+        ArrayList<String> test_names = new ArrayList<String>();
+        ArrayList<Double> params = new ArrayList<Double>();
+        LinkedList<String[]> rows = new LinkedList<String[]>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(csv_filename), Charset.forName("UTF-8")));
+        try {
+            String line;
+            boolean description_line = false;
+            while ((line = reader.readLine()) != null) {
+                if (description_line && line.startsWith("## ")) {
+                    // the line that follows the id of the case
+                    description = line.substring("## ".length());
+                    description_line = false;
+                } else if (line.startsWith("## case ")) {
+                    case_id = line.substring("## case ".length());
+                    description_line = true;
+                } else if (line.startsWith("## test" + SEPARATOR)) {
+                    for (String column : line.split(SEPARATOR)) {
+                        if (column.matches("value[0-9]+")) {
+                            values_count++;
+                        } else if (column.equals("runtime")) {
+                            // older versions: runtime, without unit
+                            columns = LEGACY_CSV_COLUMNS;
+                        }
+                    }
+                } else if (!line.startsWith("#") && !line.isEmpty()) {
+                    String[] row = line.split(SEPARATOR);
+                    if (row.length < columns + values_count) {
+                        throw new IOException(
+                                "Invalid line in " + csv_filename + ": "
+                                + line);
+                    }
+                    if (!test_names.contains(row[0])) {
+                        test_names.add(row[0]);
+                    }
+                    Double param = Double.valueOf(row[1]);
+                    if (!params.contains(param)) {
+                        params.add(param);
+                    }
+                    rows.add(row);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        double[] param_values = new double[params.size()];
+        for (int i = 0; i < param_values.length; i++) {
+            param_values[i] = params.get(i);
+        }
+
+        DataOutputStream binary = new DataOutputStream(
+                new BufferedOutputStream(
+                        new FileOutputStream(binary_filename)));
+        try {
+            writeHeader(
+                    binary, "", case_id, description,
+                    test_names.toArray(new String[test_names.size()]),
+                    param_values, values_count);
+
+            for (String[] row : rows) {
+                double[] values = new double[values_count];
+                for (int i = 0; i < values_count; i++) {
+                    values[i] = Double.parseDouble(row[columns + i]);
+                }
+                writeRecord(
+                        binary,
+                        test_names.indexOf(row[0]),
+                        params.indexOf(Double.valueOf(row[1])),
+                        -1,
+                        parseMetrics(row, columns),
+                        values,
+                        values_count);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid number in " + csv_filename, ex);
+        } finally {
+            binary.close();
+        }
+    }
+
+    /**
+     * Metrics of a CSV row, in the order of the binary record.
+     */
+    private static long[] parseMetrics(
+            final String[] row, final int columns) {
+        if (columns == LEGACY_CSV_COLUMNS) {
+            return new long[]{toNanos(row[2]), 0, 0, 0, 0, 0, 1};
+        }
+        return new long[]{
+            toNanos(row[2]),
+            toNanos(row[3]),
+            toNanos(row[4]),
+            Long.parseLong(row[5]),
+            Long.parseLong(row[6]),
+            Long.parseLong(row[7]),
+            Long.parseLong(row[8])};
+    }
+
+    private static long toNanos(final String millis) {
+        return Math.round(Double.parseDouble(millis) * NANOS_PER_MILLI);
+    }
+
+    private static void writeHeader(
+            final DataOutputStream out,
+            final String case_name,
+            final String case_id,
+            final String description,
+            final String[] test_names,
+            final double[] param_values,
+            final int values_count) throws IOException {
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(case_name);
+        out.writeUTF(case_id);
+        out.writeUTF(description);
+        out.writeInt(test_names.length);
+        for (String test_name : test_names) {
+            out.writeUTF(test_name);
+        }
+        out.writeInt(param_values.length);
+        for (double param_value : param_values) {
+            out.writeDouble(param_value);
+        }
+        out.writeInt(values_count);
+        out.writeInt(COLUMNS.length + values_count);
+        for (String column : COLUMNS) {
+            out.writeUTF(column);
+        }
+        for (int i = 0; i < values_count; i++) {
+            out.writeUTF("value" + i);
+        }
+    }
+
+    /**
+     * Write a fixed-width record.
+     * @param metrics wall clock time, cpu time, user time, allocated bytes,
+     * gc count, gc time and number of operations
+     * @throws IOException if the record cannot be written, or if the result
+     * has more than values_count values
+     */
+    private static void writeRecord(
+            final DataOutputStream out,
+            final int test_index,
+            final int param_index,
+            final int iteration,
+            final long[] metrics,
+            final double[] values,
+            final int values_count) throws IOException {
+
+        if (values.length > values_count) {
+            throw new IOException("Result has " + values.length
+                    + " values, but the file has " + values_count);
+        }
+
+        out.writeInt(test_index);
+        out.writeInt(param_index);
+        out.writeInt(iteration);
+        for (long metric : metrics) {
+            out.writeLong(metric);
+        }
+        for (int i = 0; i < values_count; i++) {
+            if (i < values.length) {
+                out.writeDouble(values[i]);
+            } else {
+                out.writeDouble(Double.NaN);
+            }
+        }
+    }
+
+    private static int indexOf(
+            final double[] param_values, final double param_value) {
+        for (int i = 0; i < param_values.length; i++) {
+            if (param_values[i] == param_value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -24,35 +24,41 @@
 
 package info.debatty.jinu;
 
-import com.mitchellbosecke.pebble.PebbleEngine;
-import com.mitchellbosecke.pebble.error.PebbleException;
-import com.mitchellbosecke.pebble.template.PebbleTemplate;
-import java.awt.Desktop;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +69,10 @@ import org.slf4j.LoggerFactory;
 public class Case implements Serializable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Case.class);
+    private static final long NANOS_PER_MILLI = 1000000;
+    private static final double DEFAULT_CONFIDENCE = 0.95;
+    private static final int DAY_TAG_LENGTH = 8;
+    private static final int DEFAULT_FIXTURE_BUDGET_RATIO = 4;
 
     private String description = "";
     private String base_dir = "";
@@ -71,10 +81,48 @@ public class Case implements Serializable {
     private final LinkedList<TestFactory> tests =
             new LinkedList<TestFactory>();
     private double[] param_values = null;
+    private List<ParameterPoint> points = null;
+    private final LinkedList<String> workers = new LinkedList<String>();
+    private transient WorkerPool worker_pool = null;
+    private transient InstancePool instances = null;
+    private FixtureProvider<?> fixture_provider = null;
+    private long fixture_budget = 0;
+    private long throughput_window = 0;
+    private final LinkedHashMap<String, Boolean> datasets =
+            new LinkedHashMap<String, Boolean>();
+    private Shard shard = null;
+    private String baseline = null;
+    private double regression_threshold = Double.NaN;
+    private double regression_confidence = DEFAULT_CONFIDENCE;
+    private final LinkedList<Metric> regression_metrics =
+            new LinkedList<Metric>();
     private int parallelism;
+    private double max_relative_half_width = 0;
+    private Metric racing_metric = null;
+    private double racing_confidence;
+    private int min_iterations = 0;
+    private int warmup_iterations = 0;
+    private int steady_state_window = 0;
+    private double steady_state_cv = 0;
+    private int max_warmup_iterations = 0;
+    private GcPolicy gc_policy = GcPolicy.NONE;
+    private ForkMode fork_mode = ForkMode.NONE;
+    private final LinkedList<String> jvm_args = new LinkedList<String>();
+    private final HashMap<TestFactory, List<String>> test_jvm_args =
+            new HashMap<TestFactory, List<String>>();
+    private long timeout = 0;
+    private final HashMap<TestFactory, Long> test_timeouts =
+            new HashMap<TestFactory, Long>();
+    private boolean skip_larger_after_timeout = false;
+    private String heap_size = null;
+    private final HashMap<TestFactory, String> test_heap_sizes =
+            new HashMap<TestFactory, String>();
 
-    private final LinkedList<Listener> listeners
+    private transient LinkedList<Listener> listeners
             = new LinkedList<Listener>();
+    private transient LinkedList<ResultSink> sinks =
+            new LinkedList<ResultSink>();
+    private transient byte[] config = null;
 
     /**
      * Initialize case with default parallelism.
@@ -124,6 +172,29 @@ public class Case implements Serializable {
      */
     public final void setParamValues(final double[] param_values) {
         this.param_values = param_values;
+        this.points = null;
+    }
+
+    /**
+     * Run the tests on the points of a parameter space (see
+     * {@link ParameterSpace}), instead of a list of param values. Each test
+     * receives the index of the point as param value: tests should extend
+     * {@link PointTest}.
+     * @param points the whole design, in order (the index of each point is
+     * its position in the list)
+     */
+    public final void setParameterPoints(final List<ParameterPoint> points) {
+        double[] indexes = new double[points.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            if (points.get(i).getIndex() != i) {
+                throw new IllegalArgumentException(
+                        "Point " + i + " has index "
+                        + points.get(i).getIndex());
+            }
+            indexes[i] = i;
+        }
+        this.points = new ArrayList<ParameterPoint>(points);
+        this.param_values = indexes;
     }
 
     /**
@@ -132,6 +203,293 @@ public class Case implements Serializable {
      */
     public final void setIterations(final int iterations) {
         this.iterations = iterations;
+        this.max_relative_half_width = 0;
+    }
+
+    /**
+     * Adapt the number of iterations of each test and param value: after
+     * min_iterations, a test keeps running with a param value only until the
+     * half-width of the confidence interval of its runtime, relative to the
+     * mean runtime, drops below max_relative_half_width, or until
+     * max_iterations is reached.
+     *
+     * Once min_iterations are done, iterations are submitted one at a time
+     * (all tasks of an iteration must finish before deciding which pairs
+     * need another run).
+     * @param max_relative_half_width for example 0.01 for +/- 1%
+     * @param min_iterations at least 2
+     * @param max_iterations
+     */
+    public final void setAdaptiveIterations(
+            final double max_relative_half_width,
+            final int min_iterations,
+            final int max_iterations) {
+        this.max_relative_half_width = max_relative_half_width;
+        this.min_iterations = Math.max(2, min_iterations);
+        this.iterations = max_iterations;
+    }
+
+    /**
+     * Race the tests: after each iteration, stop running the tests that are
+     * significantly worse than the best test for this metric (with every
+     * param value), according to a one-sided Welch's t-test at this
+     * confidence level. The remaining tests get the threads that are freed.
+     *
+     * Once 2 iterations are done, iterations are submitted one at a time.
+     * @param metric
+     * @param confidence for example 0.95
+     */
+    public final void setRacing(final Metric metric, final double confidence) {
+        this.racing_metric = metric;
+        this.racing_confidence = confidence;
+        this.min_iterations = Math.max(2, min_iterations);
+    }
+
+    /**
+     * Set the number of warmup iterations, that will be run for each test and
+     * each param value before the actual measurements, and discarded.
+     * @param warmup_iterations
+     */
+    public final void setWarmupIterations(final int warmup_iterations) {
+        this.warmup_iterations = warmup_iterations;
+    }
+
+    /**
+     * Keep warming up each test (after the fixed warmup iterations) until the
+     * coefficient of variation of the runtime of the last window runs drops
+     * below max_cv, or until max_warmup_iterations is reached.
+     * @param window number of runs used to compute the coefficient of
+     * variation (0 to disable steady state detection)
+     * @param max_cv
+     * @param max_warmup_iterations
+     */
+    public final void setSteadyState(
+            final int window,
+            final double max_cv,
+            final int max_warmup_iterations) {
+        this.steady_state_window = window;
+        this.steady_state_cv = max_cv;
+        this.max_warmup_iterations = max_warmup_iterations;
+    }
+
+    /**
+     * Define when the garbage collector is explicitly called (default is
+     * NONE). With BETWEEN_WAVES, the tasks of an iteration are only started
+     * when all tasks of the previous iteration are finished.
+     * @param gc_policy
+     */
+    public final void setGcPolicy(final GcPolicy gc_policy) {
+        this.gc_policy = gc_policy;
+    }
+
+    /**
+     * Run the tests in child JVMs (default is NONE).
+     * In fork mode, the case is serialized and sent to each child JVM, hence
+     * the case, its test factories, fixture provider, parameter points and
+     * shard must be Serializable (listeners and sinks stay in this JVM).
+     * @param fork_mode
+     */
+    public final void setForkMode(final ForkMode fork_mode) {
+        this.fork_mode = fork_mode;
+    }
+
+    /**
+     * Set the arguments passed to all child JVMs in fork mode.
+     * @param args
+     */
+    public final void setJvmArgs(final String... args) {
+        jvm_args.clear();
+        Collections.addAll(jvm_args, args);
+    }
+
+    /**
+     * Set additional arguments passed to the child JVMs running this test.
+     * @param factory
+     * @param args
+     */
+    public final void setJvmArgs(
+            final TestFactory factory, final String... args) {
+        test_jvm_args.put(factory, Arrays.asList(args));
+    }
+
+    /**
+     * Set the heap size (e.g. 2g) of the child JVMs in fork mode.
+     * @param heap_size
+     */
+    public final void setHeapSize(final String heap_size) {
+        this.heap_size = heap_size;
+    }
+
+    /**
+     * Set the heap size (e.g. 2g) of the child JVMs running this test.
+     * @param factory
+     * @param heap_size
+     */
+    public final void setHeapSize(
+            final TestFactory factory, final String heap_size) {
+        test_heap_sizes.put(factory, heap_size);
+    }
+
+    /**
+     * Run the tests on worker JVMs (see {@link Worker}) instead of the local
+     * JVM. The tests are sent to the workers over TCP, and each result
+     * records the worker that produced it. If a worker is lost, its tests
+     * are run again on the other workers.
+     *
+     * Each address is a connection that runs one test at a time: an address
+     * can be repeated to run several tests in parallel on the same worker.
+     * The case is serialized and sent to each worker, hence the case, its
+     * test factories, fixture provider, parameter points and shard must be
+     * Serializable (listeners and sinks stay in this JVM). The workers must
+     * have these classes on their classpath.
+     * @param addresses host:port of the workers
+     */
+    public final void setWorkers(final String... addresses) {
+        workers.clear();
+        workers.addAll(Arrays.asList(addresses));
+    }
+
+    /**
+     * Only run a shard of this case (null to run all tests). The journals
+     * of all shards can then be merged with
+     * {@link #merge(java.lang.String...)}.
+     *
+     * Sharding cannot be combined with adaptive iterations or racing, as
+     * these depend on the results of all runs.
+     * @param shard
+     */
+    public final void setShard(final Shard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Compare the results with a baseline: the results of a previous run of
+     * this case, identified by its time tag (the git tag created by
+     * {@link #commitToGit(boolean)} is T followed by the time tag). The
+     * journal of the baseline is read from the base directory or, if it was
+     * deleted, from the git tag.
+     *
+     * Tests and param values that are not in the baseline are not compared.
+     * @param time_tag like 20160101120000 (null to disable the comparison)
+     */
+    public final void setBaseline(final String time_tag) {
+        this.baseline = time_tag;
+    }
+
+    /**
+     * When the results are compared to a baseline, fail the case (with a
+     * {@link RegressionException}, once the reports are written) if the mean
+     * of a metric increased by more than threshold, and the change is
+     * significant (two-sided Welch t-test).
+     * @param threshold relative increase, like 0.1 for 10%
+     * @param confidence like 0.95
+     * @param metrics gated metrics (default: wall clock time)
+     */
+    public final void setRegressionGate(
+            final double threshold,
+            final double confidence,
+            final Metric... metrics) {
+        this.regression_threshold = threshold;
+        this.regression_confidence = confidence;
+        regression_metrics.clear();
+        if (metrics.length == 0) {
+            regression_metrics.add(Metric.WALL_TIME);
+        } else {
+            regression_metrics.addAll(Arrays.asList(metrics));
+        }
+    }
+
+    /**
+     * Interrupt each run of a test that lasts more than timeout ms. The run
+     * is recorded as a timeout instead of a result. In fork mode, the child
+     * JVM is killed (and restarted for the next run).
+     *
+     * A test that ignores the interrupt keeps its thread busy, but the case
+     * goes on without waiting for it.
+     * @param timeout (ms), 0 (default) for no timeout
+     */
+    public final void setTimeout(final long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Use a specific timeout for this test.
+     * @param factory
+     * @param timeout (ms), 0 for no timeout
+     */
+    public final void setTimeout(
+            final TestFactory factory, final long timeout) {
+        test_timeouts.put(factory, timeout);
+    }
+
+    /**
+     * Once a test has timed out with a param value, skip the larger param
+     * values for this test. This is ignored on a parameter space, as the
+     * order of the points of a design means nothing.
+     * @param skip
+     */
+    public final void setSkipLargerAfterTimeout(final boolean skip) {
+        this.skip_larger_after_timeout = skip;
+    }
+
+    /**
+     * Build the input of the tests once per param value, instead of in each
+     * run. Fixtures are cached, and handed to the tests that implement
+     * {@link FixtureTest} before each run, outside of the timed region. Uses
+     * a memory budget of 1/4 of the max heap size.
+     * @param provider
+     */
+    public final void setFixtureProvider(final FixtureProvider<?> provider) {
+        setFixtureProvider(provider, 0);
+    }
+
+    /**
+     * Build the input of the tests once per param value, with this memory
+     * budget. When the fixtures in cache exceed the budget, the least
+     * recently used are evicted.
+     * @param provider
+     * @param budget (bytes), 0 for 1/4 of the max heap size
+     */
+    public final void setFixtureProvider(
+            final FixtureProvider<?> provider, final long budget) {
+        this.fixture_provider = provider;
+        this.fixture_budget = budget;
+    }
+
+    /**
+     * Measure the throughput of the tests: each run is a window of this
+     * duration, during which the test is called repeatedly, in batches of
+     * calibrated size (once per test and param value). The time of each
+     * batch is measured, without the overhead of the timer. Results then
+     * hold the resources used by the whole window and the number of calls,
+     * from which the report derives the resources per call and the number
+     * of operations per second.
+     *
+     * With a {@link LifecycleTest}, setup and teardown are called once per
+     * window. The timeout (if any) must be larger than the window.
+     * @param window (ms), 0 (default) to call each test once per run
+     */
+    public final void setThroughputMode(final long window) {
+        this.throughput_window = window;
+    }
+
+    /**
+     * Map this file before the tests are run. Tests access it with
+     * {@link MappedDataset#get(String)}.
+     * @param path
+     */
+    public final void addDataset(final String path) {
+        addDataset(path, false);
+    }
+
+    /**
+     * Map this file before the tests are run, and optionally touch all its
+     * pages, so the first runs do not measure the disk.
+     * @param path
+     * @param pretouch
+     */
+    public final void addDataset(final String path, final boolean pretouch) {
+        datasets.put(path, pretouch);
     }
 
     /**
@@ -142,6 +500,15 @@ public class Case implements Serializable {
         listeners.add(listener);
     }
 
+    /**
+     * Add a sink, that will receive each result as soon as it is available.
+     * The CSV file and HTML report are always produced.
+     * @param sink
+     */
+    public final void addSink(final ResultSink sink) {
+        sinks.add(sink);
+    }
+
     /**
      * Add a test to the case.
      * @param factory
@@ -151,120 +518,839 @@ public class Case implements Serializable {
     }
 
     /**
-     * Run the tests.
-     * @throws java.io.FileNotFoundException if reports cannot be written.
-     * @throws Exception if one of the tests throws an Exception
+     * Run the tests.
+     *
+     * Completed runs are journaled in the directory of the day, so that an
+     * interrupted case can be resumed with {@link #resume(java.lang.String)}.
+     * @throws java.io.FileNotFoundException if reports cannot be written.
+     * @throws Exception if one of the tests throws an Exception, or a
+     * {@link RegressionException} if a test regressed compared to the
+     * baseline
+     */
+    public final void run() throws FileNotFoundException, Exception {
+
+        Date date = new Date();
+        SimpleDateFormat formater = new SimpleDateFormat("yyyyMMddHHmmss");
+        SimpleDateFormat day_formater = new SimpleDateFormat("yyyyMMdd");
+        String time_tag = formater.format(date);
+        String day_tag = day_formater.format(date);
+        String prefix = base_dir + day_tag + File.separator + time_tag;
+
+        // Create repository for report if needed
+        File directory = new File(base_dir + day_tag);
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        run(prefix, time_tag, false);
+    }
+
+    /**
+     * Run a shard of the tests.
+     * @param shard
+     * @throws java.io.FileNotFoundException if reports cannot be written.
+     * @throws Exception if one of the tests throws an Exception
+     * @see #setShard(info.debatty.jinu.Shard)
+     */
+    public final void run(final Shard shard)
+            throws FileNotFoundException, Exception {
+        setShard(shard);
+        run();
+    }
+
+    /**
+     * Merge the journals of the shards of this case (or of any runs of this
+     * case) into a single report, as if all runs were performed by the same
+     * machine. A run found in several journals is only counted once.
+     *
+     * Only completed runs are journaled: failures, timeouts and warmups of
+     * the shards are not part of the merged report.
+     * @param paths paths of the journals (like 20160101/20160101120000.journal)
+     * @throws java.io.FileNotFoundException if a journal does not exist
+     * @throws Exception if a journal cannot be read
+     */
+    public final void merge(final String... paths)
+            throws FileNotFoundException, Exception {
+
+        for (String path : paths) {
+            if (!new File(path).isFile()) {
+                throw new FileNotFoundException(path);
+            }
+        }
+
+        Date date = new Date();
+        String time_tag = new SimpleDateFormat("yyyyMMddHHmmss").format(date);
+        String day_tag = new SimpleDateFormat("yyyyMMdd").format(date);
+        String prefix = base_dir + day_tag + File.separator + time_tag;
+        File directory = new File(base_dir + day_tag);
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        if (param_values == null) {
+            param_values = new double[]{0};
+        }
+
+        ResultStore baseline_store = readBaseline();
+        CaseResult case_result = createReport();
+        ResultSinks sinks = openSinks(prefix, case_result);
+        Journal merged = new Journal(
+                new File(prefix + Journal.EXTENSION), tests, param_values);
+        merged.open(case_result);
+        sinks.add(merged);
+
+        for (String path : paths) {
+            Journal journal = new Journal(new File(path), tests, param_values);
+            int duplicates = 0;
+            for (TestResult result : journal.read()) {
+                if (merged.isDone(result)) {
+                    duplicates++;
+                    continue;
+                }
+                sinks.write(result);
+            }
+            case_result.addMergedJournal(new File(path).getName());
+            if (duplicates > 0) {
+                LOGGER.warn(
+                        "Ignored {} duplicate runs from {}", duplicates, path);
+            }
+        }
+
+        compareToBaseline(case_result, baseline_store);
+        sinks.close(case_result);
+
+        if (commit_to_git) {
+            commitToGit(time_tag);
+        }
+        checkRegressions(case_result);
+    }
+
+    /**
+     * Resume an interrupted case: the runs found in the journal are not
+     * executed again, and the reports (which overwrite the reports of the
+     * interrupted run) contain both the journaled and the new results.
+     *
+     * The tests and param values must be the same as in the interrupted
+     * run. Warmups are not journaled: the resumed JVM is cold, so each test
+     * and param value that still has runs is warmed up again, and the
+     * report only contains the warmups of the resumed run.
+     * @param path path of the journal (like 20160101/20160101120000.journal)
+     * @throws java.io.FileNotFoundException if the journal does not exist
+     * @throws Exception if one of the tests throws an Exception
+     */
+    public final void resume(final String path)
+            throws FileNotFoundException, Exception {
+
+        File journal = new File(path);
+        if (!journal.isFile()) {
+            throw new FileNotFoundException(path);
+        }
+
+        if (!path.endsWith(Journal.EXTENSION)) {
+            throw new IllegalArgumentException(
+                    path + " is not a journal (*" + Journal.EXTENSION + ")");
+        }
+
+        String prefix = path.substring(
+                0, path.length() - Journal.EXTENSION.length());
+        String name = journal.getName();
+        String time_tag = name.substring(
+                0, name.length() - Journal.EXTENSION.length());
+        run(prefix, time_tag, true);
+    }
+
+    private void run(
+            final String prefix, final String time_tag, final boolean resume)
+            throws FileNotFoundException, Exception {
+
+        if (param_values == null) {
+            // No param to give to the tests...
+            param_values = new double[]{0};
+        }
+
+        if (shard != null && (isAdaptive() || racing_metric != null)) {
+            throw new IllegalStateException(
+                    "Sharding cannot be combined with adaptive iterations"
+                    + " or racing");
+        }
+
+        ResultStore baseline_store = readBaseline();
+        CaseResult case_result = createReport();
+        ResultSinks sinks = openSinks(prefix, case_result);
+
+        // Replay the results of the interrupted run, then journal new results
+        Journal journal = new Journal(
+                new File(prefix + Journal.EXTENSION), tests, param_values);
+        int done = 0;
+        if (resume) {
+            for (TestResult result : journal.read()) {
+                sinks.write(result);
+                if (result.getIteration() < iterations) {
+                    done++;
+                }
+            }
+            LOGGER.info("Resuming case, {} runs already done", done);
+        }
+        journal.open(case_result);
+        sinks.add(journal);
+
+        // Run tests
+        ProgressBar progress = new ProgressBar(countRuns() - done);
+        openDatasets();
+        instances = newInstancePool();
+        if (fork_mode != ForkMode.NONE || !workers.isEmpty()) {
+            config = serialize();
+        }
+        Scheduler scheduler;
+        if (workers.isEmpty()) {
+            scheduler = new Scheduler(parallelism, iterations, progress);
+        } else {
+            // one thread per connection to a worker
+            worker_pool = new WorkerPool(workers, this);
+            scheduler = new Scheduler(workers.size(), iterations, progress);
+        }
+
+        HashMap<FactoryAndValue, Integer> warmups =
+                new HashMap<FactoryAndValue, Integer>();
+        if (fork_mode == ForkMode.NONE && workers.isEmpty()) {
+            // In fork and distributed modes, the tests are warmed up in the
+            // child or worker JVMs
+            warmup(scheduler.getPool(), journal, warmups);
+        }
+        if (gc_policy != GcPolicy.NONE) {
+            collectGarbage();
+        }
+
+        ArrayList<HashMap<Object, ForkedJvm>> forks =
+                new ArrayList<HashMap<Object, ForkedJvm>>();
+        HashMap<Object, ForkedJvm> shared_forks =
+                new HashMap<Object, ForkedJvm>();
+        for (int i = 0; i < iterations; i++) {
+            if (fork_mode == ForkMode.PER_ITERATION) {
+                forks.add(new HashMap<Object, ForkedJvm>());
+            } else {
+                forks.add(shared_forks);
+            }
+        }
+        LinkedList<ForkInfo> fork_startups = new LinkedList<ForkInfo>();
+
+        progress.start();
+        long start_time = System.nanoTime();
+
+        // Calling the GC between waves requires that no test is running, so
+        // in this case the tasks are submitted one iteration at a time.
+        // In adaptive and racing modes, the first min_iterations are queued up
+        // front, then iterations are submitted one at a time (only for the
+        // pairs that did not converge, and the tests that were not
+        // eliminated). Otherwise all tasks are queued up front.
+        boolean waves = gc_policy == GcPolicy.BETWEEN_WAVES;
+        int upfront = iterations;
+        if (waves) {
+            upfront = 0;
+        } else if (isAdaptive() || racing_metric != null) {
+            upfront = Math.min(min_iterations, iterations);
+        }
+
+        for (int i = 0; i < upfront; i++) {
+            submitIteration(
+                    i, scheduler, sinks, journal, case_result, warmups,
+                    forks.get(i));
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            if (i >= upfront) {
+                int running = submitIteration(
+                        i, scheduler, sinks, journal, case_result, warmups,
+                        forks.get(i));
+                if (running == 0) {
+                    LOGGER.info("All tests converged after {} iterations", i);
+                    break;
+                }
+            }
+
+            scheduler.await(i);
+            LOGGER.info("Finished iteration {}", i);
+
+            if (racing_metric != null) {
+                race(case_result, i);
+            }
+
+            if (fork_mode == ForkMode.PER_ITERATION) {
+                closeForks(forks.get(i), fork_startups);
+            }
+
+            if (waves) {
+                collectGarbage();
+            }
+
+            for (Listener listener : listeners) {
+                listener.notify(i);
+            }
+        }
+
+        scheduler.shutdown();
+        closeForks(shared_forks, fork_startups);
+        if (worker_pool != null) {
+            worker_pool.close();
+            worker_pool = null;
+        }
+        instances = null;
+        config = null;
+
+        case_result.setWarmups(warmups);
+        case_result.setForks(fork_startups);
+        case_result.setRuntime(
+                (System.nanoTime() - start_time) / NANOS_PER_MILLI);
+
+        compareToBaseline(case_result, baseline_store);
+        sinks.close(case_result);
+
+        if (commit_to_git) {
+            commitToGit(time_tag);
+        }
+        checkRegressions(case_result);
+    }
+
+    /**
+     * Read the results of the baseline, from the base directory or from the
+     * git tag of the baseline.
+     * @return null if there is no baseline
+     * @throws IOException if the baseline cannot be found or read
+     */
+    private ResultStore readBaseline() throws IOException {
+        if (baseline == null) {
+            return null;
+        }
+
+        if (baseline.length() < DAY_TAG_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Invalid baseline time tag " + baseline);
+        }
+
+        File file = new File(base_dir + baseline.substring(0, DAY_TAG_LENGTH)
+                + File.separator + baseline + Journal.EXTENSION);
+        boolean from_git = !file.isFile();
+        if (from_git) {
+            file = checkoutFromTag(file, "T" + baseline);
+        }
+
+        ResultStore store = new ResultStore(tests, param_values);
+        try {
+            Journal journal = new Journal(file, tests, param_values);
+            for (TestResult result : journal.readMatching()) {
+                store.add(result.getFactory(), result);
+            }
+        } finally {
+            if (from_git && !file.delete()) {
+                LOGGER.debug("Could not delete {}", file);
+            }
+        }
+
+        LOGGER.info("Read {} runs from baseline T{}", store.size(), baseline);
+        return store;
+    }
+
+    /**
+     * Copy a file, as it was at this git tag, to a temporary file.
+     * @throws IOException if the tag or the file does not exist
+     */
+    private static File checkoutFromTag(final File file, final String tag)
+            throws IOException {
+
+        Repository repo = new FileRepositoryBuilder().findGitDir().build();
+        try {
+            ObjectId tree = repo.resolve(tag + "^{tree}");
+            if (tree == null) {
+                throw new FileNotFoundException(file + " (no tag " + tag + ")");
+            }
+
+            String path = repo.getWorkTree().getCanonicalFile().toURI()
+                    .relativize(file.getCanonicalFile().toURI()).getPath();
+            TreeWalk walk = TreeWalk.forPath(repo, path, tree);
+            if (walk == null) {
+                throw new FileNotFoundException(
+                        file + " (not found in tag " + tag + ")");
+            }
+
+            File copy = File.createTempFile("baseline", Journal.EXTENSION);
+            OutputStream out = new FileOutputStream(copy);
+            try {
+                repo.open(walk.getObjectId(0)).copyTo(out);
+            } finally {
+                out.close();
+            }
+            return copy;
+        } finally {
+            repo.close();
+        }
+    }
+
+    /**
+     * Compare each test, param value and metric with the baseline.
+     */
+    private void compareToBaseline(
+            final CaseResult case_result, final ResultStore baseline_store) {
+        if (baseline_store == null) {
+            return;
+        }
+
+        LinkedList<BaselineComparison> comparisons =
+                new LinkedList<BaselineComparison>();
+        Metric[] metrics = Metric.values();
+        for (int t = 0; t < tests.size(); t++) {
+            TestFactory factory = tests.get(t);
+            for (int p = 0; p < param_values.length; p++) {
+                double param_value = param_values[p];
+                ResultStore.Cell baseline_cell =
+                        baseline_store.getCell(factory, param_value);
+                ResultStore.Cell cell =
+                        case_result.getStore().getCell(factory, param_value);
+                if (baseline_cell.size() == 0 || cell.size() == 0) {
+                    continue;
+                }
+
+                for (int m = 0; m < metrics.length; m++) {
+                    Metric metric = metrics[m];
+                    double threshold = Double.NaN;
+                    if (regression_metrics.contains(metric)) {
+                        threshold = regression_threshold;
+                    }
+                    comparisons.add(new BaselineComparison(
+                            new FactoryAndValue(factory, param_value),
+                            metric,
+                            baseline_cell.getMetrics(metric.getColumn()),
+                            cell.getMetrics(metric.getColumn()),
+                            threshold,
+                            regression_confidence,
+                            (t * param_values.length + p) * metrics.length
+                                    + m));
+                }
+            }
+        }
+        case_result.setComparisons(baseline, comparisons);
+    }
+
+    /**
+     * @throws RegressionException if a gated metric regressed
+     */
+    private void checkRegressions(final CaseResult case_result)
+            throws RegressionException {
+        List<BaselineComparison> regressions = case_result.getRegressions();
+        if (!regressions.isEmpty()) {
+            throw new RegressionException(baseline, regressions);
+        }
+    }
+
+    /**
+     * Queue the tasks of this iteration (except the runs that are already
+     * journaled, and the pairs that converged in adaptive mode).
+     * @return the number of test and param value pairs that did not converge
+     */
+    private int submitIteration(
+            final int iteration,
+            final Scheduler scheduler,
+            final ResultSink sink,
+            final Journal journal,
+            final CaseResult case_result,
+            final Map<FactoryAndValue, Integer> warmups,
+            final Map<Object, ForkedJvm> forks) {
+
+        int running = 0;
+        for (int t = 0; t < tests.size(); t++) {
+            TestFactory factory = tests.get(t);
+            if (case_result.getEliminatedAt(factory) >= 0) {
+                for (double param_value : param_values) {
+                    finishFork(forks, factory, param_value);
+                }
+                continue;
+            }
+
+            for (int p = 0; p < param_values.length; p++) {
+                double param_value = param_values[p];
+                if (iteration >= min_iterations
+                        && hasConverged(case_result, factory, param_value)) {
+                    finishFork(forks, factory, param_value);
+                    continue;
+                }
+
+                running++;
+                if (!inShard(iteration, t, p)
+                        || journal.isDone(iteration, t, p)) {
+                    continue;
+                }
+
+                FactoryAndValue key = newKey(factory, p);
+                if (case_result.isSkipped(key)) {
+                    running--;
+                    case_result.addSkipped(key);
+                    finishFork(forks, factory, param_value);
+                    continue;
+                }
+
+                if (worker_pool != null) {
+                    // the local instance is only used to label the result
+                    scheduler.submit(iteration, new RemoteTest(
+                            worker_pool,
+                            instances.get(factory),
+                            key,
+                            iteration,
+                            case_result,
+                            sink,
+                            warmups));
+                } else if (fork_mode == ForkMode.NONE) {
+                    scheduler.submit(iteration, new RunnableTest(
+                            instances,
+                            key,
+                            iteration,
+                            case_result,
+                            sink,
+                            getTimeout(factory),
+                            gc_policy == GcPolicy.AFTER_EACH_RUN));
+                } else {
+                    ForkedJvm jvm = getFork(
+                            forks, t, param_value, iteration,
+                            scheduler.getPool());
+                    scheduler.submit(iteration, new ForkedTest(
+                            jvm,
+                            instances.get(factory),
+                            key,
+                            iteration,
+                            case_result,
+                            sink,
+                            warmups), jvm);
+                }
+            }
+        }
+
+        if (fork_mode == ForkMode.PER_ITERATION
+                || iteration == iterations - 1) {
+            // no more tests will be queued on these JVMs
+            for (ForkedJvm jvm : forks.values()) {
+                jvm.finish();
+            }
+        }
+        return running;
+    }
+
+    /**
+     * In PER_TEST fork mode, stop the JVM of this test and param value once
+     * its queued runs are finished (no more runs will be queued).
+     */
+    private void finishFork(
+            final Map<Object, ForkedJvm> forks,
+            final TestFactory factory,
+            final double param_value) {
+        if (fork_mode != ForkMode.PER_TEST) {
+            return;
+        }
+
+        ForkedJvm jvm = forks.get(new FactoryAndValue(factory, param_value));
+        if (jvm != null) {
+            jvm.finish();
+        }
+    }
+
+    /**
+     * Number of runs of this case (or of its shard).
+     */
+    private int countRuns() {
+        int count = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (int t = 0; t < tests.size(); t++) {
+                for (int p = 0; p < param_values.length; p++) {
+                    if (inShard(i, t, p)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if this run belongs to the shard of this case (if any).
+     */
+    private boolean inShard(
+            final int iteration, final int test_index, final int param_index) {
+        return shard == null || shard.contains(
+                iteration,
+                test_index,
+                param_index,
+                tests.size(),
+                param_values.length);
+    }
+
+    /**
+     * Create and open the sinks that receive the results: the report, the
+     * csv and html files, and the sinks added by the user.
+     */
+    private ResultSinks openSinks(
+            final String prefix, final CaseResult case_result)
+            throws IOException {
+        ResultSinks sinks = new ResultSinks();
+        sinks.add(case_result);
+        sinks.add(new CsvSink(prefix + ".csv"));
+        sinks.add(new HtmlSink(prefix + ".html", true));
+        sinks.addAll(this.sinks);
+        sinks.open(case_result);
+        return sinks;
+    }
+
+    /**
+     * Key of this test and param value (or parameter point).
+     */
+    private FactoryAndValue newKey(
+            final TestFactory factory, final int param_index) {
+        return getKey(factory, param_values[param_index]);
+    }
+
+    /**
+     * Key of this test and param value. If the case runs on a parameter
+     * space, the key holds the point (and the param value is its index).
+     * @param factory
+     * @param param_value
+     * @return
+     */
+    final FactoryAndValue getKey(
+            final TestFactory factory, final double param_value) {
+        if (points != null) {
+            return new FactoryAndValue(factory, points.get((int) param_value));
+        }
+        return new FactoryAndValue(factory, param_value);
+    }
+
+    /**
+     * In racing mode, eliminate the tests that are dominated.
+     */
+    private void race(final CaseResult case_result, final int iteration) {
+        LinkedList<TestFactory> contenders = new LinkedList<TestFactory>();
+        for (TestFactory factory : tests) {
+            if (case_result.getEliminatedAt(factory) < 0) {
+                contenders.add(factory);
+            }
+        }
+
+        LinkedList<TestFactory> dominated = new LinkedList<TestFactory>();
+        for (TestFactory factory : contenders) {
+            if (isDominated(case_result, factory, contenders)) {
+                dominated.add(factory);
+            }
+        }
+
+        for (TestFactory factory : dominated) {
+            case_result.eliminate(factory, iteration);
+            LOGGER.info(
+                    "{} eliminated after iteration {}",
+                    factory.newInstance().getClass().getName(),
+                    iteration);
+        }
+    }
+
+    /**
+     * Check if this test is significantly worse than the best contender,
+     * for every param value.
      */
-    public final void run() throws FileNotFoundException, Exception {
+    private boolean isDominated(
+            final CaseResult case_result,
+            final TestFactory factory,
+            final List<TestFactory> contenders) {
 
-        Date date = new Date();
-        SimpleDateFormat formater = new SimpleDateFormat("yyyyMMddHHmmss");
-        SimpleDateFormat day_formater = new SimpleDateFormat("yyyyMMdd");
-        String time_tag = formater.format(date);
-        String day_tag = day_formater.format(date);
-        String filename = base_dir + day_tag + File.separator + time_tag
-                + ".html";
+        for (double param_value : param_values) {
+            TestFactory best = null;
+            double best_mean = Double.POSITIVE_INFINITY;
+            for (TestFactory contender : contenders) {
+                double mean = case_result.getMean(
+                        contender, racing_metric, param_value);
+                if (mean < best_mean) {
+                    best = contender;
+                    best_mean = mean;
+                }
+            }
 
-        // Create repository for report if needed
-        File directory = new File(base_dir + day_tag);
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
+            if (best == null || best == factory) {
+                return false;
+            }
 
-        if (param_values == null) {
-            // No param to give to the tests...
-            param_values = new double[]{0};
+            double p_value = case_result.getPValue(
+                    factory, best, racing_metric, param_value);
+            if (!(p_value < 1 - racing_confidence)) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        CaseResult case_result = createReport();
-        HashMap<FactoryAndValue, List<TestResult>> results =
-                new HashMap<FactoryAndValue, List<TestResult>>();
-
-        ExecutorService threadpool = Executors.newFixedThreadPool(parallelism);
+    /**
+     * In adaptive mode, check if the confidence interval of the runtime of
+     * this pair is narrow enough.
+     */
+    private boolean hasConverged(
+            final CaseResult case_result,
+            final TestFactory factory,
+            final double param_value) {
 
-        // Run tests
-        ProgressBar progress = new ProgressBar(iterations);
-        progress.start();
+        if (!isAdaptive()) {
+            return false;
+        }
 
-        long start_time = System.currentTimeMillis();
+        ResultStore.Cell cell =
+                case_result.getStore().getCell(factory, param_value);
+        TestInterval interval = cell == null ? null : cell.getInterval();
+        return interval != null
+                && interval.getRelativeHalfWidth() <= max_relative_half_width;
+    }
 
-        for (int i = 0; i < iterations; i++) {
-            LOGGER.info("Start iteration {}", i);
-            ArrayList<Future> tasks = new ArrayList<Future>();
+    /**
+     * Run the warmup iterations of each test and param value that has runs
+     * left to do.
+     * @param threadpool
+     * @param journal runs that are already done (when the case is resumed)
+     * @param warmups will receive the number of warmup runs of each test and
+     * param value
+     * @throws Exception if the warmup is interrupted
+     */
+    private void warmup(
+            final ExecutorService threadpool,
+            final Journal journal,
+            final Map<FactoryAndValue, Integer> warmups) throws Exception {
 
-            for (TestFactory factory : tests) {
-                TestInterface test = factory.newInstance();
-                for (double param_value : param_values) {
-                    FactoryAndValue key =
-                            new FactoryAndValue(factory, param_value);
-                    List<TestResult> resultset = results.get(key);
-                    if (resultset == null) {
-                        resultset = Collections.synchronizedList(
-                                new LinkedList<TestResult>());
-                        results.put(key, resultset);
-                    }
+        if (warmup_iterations == 0 && steady_state_window == 0) {
+            return;
+        }
 
-                    tasks.add(threadpool.submit(
-                            new RunnableTest(test, param_value, resultset)));
+        LOGGER.info("Warmup");
+        HashMap<FactoryAndValue, WarmupTest> warmup_tests =
+                new HashMap<FactoryAndValue, WarmupTest>();
+        HashMap<FactoryAndValue, Future<Integer>> warmup_tasks =
+                new HashMap<FactoryAndValue, Future<Integer>>();
+        for (int t = 0; t < tests.size(); t++) {
+            TestFactory factory = tests.get(t);
+            for (int p = 0; p < param_values.length; p++) {
+                if (!hasPendingRuns(journal, t, p)) {
+                    continue;
                 }
+
+                FactoryAndValue key = newKey(factory, p);
+                WarmupTest warmup_test = new WarmupTest(
+                        instances,
+                        key,
+                        warmup_iterations,
+                        steady_state_window,
+                        steady_state_cv,
+                        max_warmup_iterations);
+                warmup_tests.put(key, warmup_test);
+                warmup_tasks.put(key, threadpool.submit(warmup_test));
             }
+        }
 
-            for (Future task : tasks) {
-                task.get();
+        for (Map.Entry<FactoryAndValue, Future<Integer>> entry
+                : warmup_tasks.entrySet()) {
+            // the whole warmup of a pair may last as long as its runs
+            long limit = getTimeout(entry.getKey().getTest())
+                    * (warmup_iterations + max_warmup_iterations);
+            if (limit <= 0) {
+                warmups.put(entry.getKey(), entry.getValue().get());
+                continue;
             }
-            progress.update(i + 1);
 
-            for (Listener listener : listeners) {
-                listener.notify(i);
+            try {
+                warmups.put(
+                        entry.getKey(),
+                        entry.getValue().get(limit, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException ex) {
+                warmup_tests.get(entry.getKey()).cancel();
+                LOGGER.warn(
+                        "Warmup of {} timed out with param {}",
+                        entry.getKey().getTest().newInstance().getClass()
+                                .getName(),
+                        entry.getKey().getValue());
             }
         }
+    }
 
-        threadpool.shutdownNow();
-
-        case_result.setResults(results);
-        case_result.setRuntime(System.currentTimeMillis() - start_time);
-
-        // Create html report
-        PebbleEngine engine = new PebbleEngine.Builder().build();
-        Writer writer = new StringWriter();
-        Map<String, Object> context = new HashMap<String, Object>();
-        context.put("report", case_result);
+    /**
+     * Check if at least one run of this test and param value belongs to the
+     * shard of this case, and is not in the journal yet.
+     */
+    private boolean hasPendingRuns(
+            final Journal journal,
+            final int test_index,
+            final int param_index) {
+        for (int i = 0; i < iterations; i++) {
+            if (inShard(i, test_index, param_index)
+                    && !journal.isDone(i, test_index, param_index)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        try {
-            PebbleTemplate template =
-                    engine.getTemplate("templates/report.twig");
-            template.evaluate(writer, context);
+    /**
+     * Get the child JVM that should run this test, param value and
+     * iteration (depending on the fork mode). The JVM itself is only started
+     * when the first test is submitted.
+     */
+    private ForkedJvm getFork(
+            final Map<Object, ForkedJvm> forks,
+            final int test_index,
+            final double param_value,
+            final int iteration,
+            final Executor pool) {
 
-        } catch (PebbleException ex) {
-            LOGGER.warn("Cannot produce html report!", ex);
-        } catch (IOException ex) {
-            LOGGER.warn("Cannot produce html report!", ex);
+        TestFactory factory = tests.get(test_index);
+        Object key = factory;
+        if (fork_mode == ForkMode.PER_TEST) {
+            key = new FactoryAndValue(factory, param_value);
         }
 
-        PrintWriter out = new PrintWriter(filename);
-        out.println(writer.toString());
-        out.close();
-        launchBrowser(filename);
+        ForkedJvm jvm = forks.get(key);
+        if (jvm == null) {
+            String label = factory.newInstance().getClass().getName();
+            if (fork_mode == ForkMode.PER_TEST) {
+                label += " " + param_value;
+            } else {
+                label += " iteration " + iteration;
+            }
+            jvm = new ForkedJvm(
+                    label, getForkCommand(factory), this, pool);
+            forks.put(key, jvm);
+        }
+        return jvm;
+    }
 
-        // write csv file
-        String data_filename = base_dir + day_tag + File.separator  + time_tag
-                + ".csv";
-        PrintWriter data_writer = new PrintWriter(data_filename);
+    private List<String> getForkCommand(final TestFactory factory) {
+        LinkedList<String> command = new LinkedList<String>();
+        command.add(System.getProperty("java.home")
+                + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvm_args);
+        if (test_jvm_args.containsKey(factory)) {
+            command.addAll(test_jvm_args.get(factory));
+        }
 
-        data_writer.write("## case " + time_tag + "\n");
-        data_writer.write("## " + this.getDescription() + "\n");
-        data_writer.write(
-                results.values().iterator().next().get(0).getHeader());
-        for (List<TestResult> resultlist : results.values()) {
-            for (TestResult result : resultlist) {
-                data_writer.write(result.toCsv() + "\n");
-            }
+        String heap = heap_size;
+        if (test_heap_sizes.containsKey(factory)) {
+            heap = test_heap_sizes.get(factory);
+        }
+        if (heap != null) {
+            command.add("-Xms" + heap);
+            command.add("-Xmx" + heap);
         }
-        data_writer.close();
 
-        if (commit_to_git) {
-            commitToGit(time_tag);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Fork.class.getName());
+        command.add(getClass().getName());
+        return command;
+    }
+
+    private static void closeForks(
+            final Map<Object, ForkedJvm> forks,
+            final List<ForkInfo> fork_startups) {
+        for (ForkedJvm jvm : forks.values()) {
+            jvm.close();
+            fork_startups.addAll(jvm.getStartups());
         }
+        forks.clear();
     }
 
     private CaseResult createReport() {
@@ -331,6 +1417,143 @@ public class Case implements Serializable {
         return param_values;
     }
 
+    /**
+     *
+     * @return time tag of the baseline, or null
+     */
+    public final String getBaseline() {
+        return baseline;
+    }
+
+    /**
+     *
+     * @return relative increase that is a regression (NaN if there is no
+     * regression gate)
+     */
+    public final double getRegressionThreshold() {
+        return regression_threshold;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final double getRegressionConfidence() {
+        return regression_confidence;
+    }
+
+    /**
+     *
+     * @return metrics checked by the regression gate
+     */
+    public final List<Metric> getRegressionMetrics() {
+        return Collections.unmodifiableList(regression_metrics);
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final FixtureProvider<?> getFixtureProvider() {
+        return fixture_provider;
+    }
+
+    /**
+     *
+     * @return memory budget of the fixtures (bytes), 0 for 1/4 of max heap
+     */
+    public final long getFixtureBudget() {
+        return fixture_budget;
+    }
+
+    /**
+     *
+     * @return the paths of the datasets
+     */
+    public final List<String> getDatasets() {
+        return new ArrayList<String>(datasets.keySet());
+    }
+
+    /**
+     * Map the datasets in this JVM (and load those that must be pretouched).
+     * @throws IOException if a dataset cannot be mapped
+     */
+    final void openDatasets() throws IOException {
+        for (Map.Entry<String, Boolean> entry : datasets.entrySet()) {
+            MappedDataset dataset = MappedDataset.get(entry.getKey());
+            if (entry.getValue()) {
+                long start = System.nanoTime();
+                dataset.load();
+                LOGGER.info("Loaded {} in {} ms",
+                        dataset,
+                        (System.nanoTime() - start) / NANOS_PER_MILLI);
+            }
+        }
+    }
+
+    /**
+     *
+     * @return duration of a run in throughput mode (ms), 0 if the throughput
+     * mode is not used
+     */
+    public final long getThroughputWindow() {
+        return throughput_window;
+    }
+
+    /**
+     * Create the instances and fixtures of the tests for this JVM.
+     * @return
+     */
+    final InstancePool newInstancePool() {
+        Throughput throughput = null;
+        if (throughput_window > 0) {
+            throughput = new Throughput(throughput_window * NANOS_PER_MILLI);
+        }
+        return new InstancePool(newFixtureCache(), throughput);
+    }
+
+    /**
+     * Create the (empty) cache of fixtures for this JVM.
+     * @return null if there is no fixture provider
+     */
+    private FixtureCache newFixtureCache() {
+        if (fixture_provider == null) {
+            return null;
+        }
+
+        long budget = fixture_budget;
+        if (budget <= 0) {
+            budget = Runtime.getRuntime().maxMemory()
+                    / DEFAULT_FIXTURE_BUDGET_RATIO;
+        }
+        return new FixtureCache(fixture_provider, budget);
+    }
+
+    /**
+     *
+     * @return the shard of this case, or null if all tests are run
+     */
+    public final Shard getShard() {
+        return shard;
+    }
+
+    /**
+     *
+     * @return host:port of the workers (empty if the tests run locally)
+     */
+    public final List<String> getWorkers() {
+        return workers;
+    }
+
+    /**
+     *
+     * @return the points of the parameter space, or null if the case uses
+     * plain param values
+     */
+    public final List<ParameterPoint> getParameterPoints() {
+        return points;
+    }
+
     /**
      *
      * @return
@@ -347,27 +1570,174 @@ public class Case implements Serializable {
         return iterations;
     }
 
-    private void launchBrowser(final String filename) {
-        if (Desktop.isDesktopSupported()) {
-            File file = new File(filename);
-            Desktop desktop = Desktop.getDesktop();
-            try {
-                desktop.browse(file.toURI());
+    /**
+     * Timeout of each run of this test.
+     * @param factory
+     * @return (ms), 0 for no timeout
+     */
+    public final long getTimeout(final TestFactory factory) {
+        Long test_timeout = test_timeouts.get(factory);
+        if (test_timeout == null) {
+            return timeout;
+        }
+        return test_timeout;
+    }
 
-            } catch (IOException e) {
-                LOGGER.info("Cannot launch brower");
-            }
-        } else {
-            Runtime runtime = Runtime.getRuntime();
-            try {
-                runtime.exec("xdg-open " + filename);
+    /**
+     *
+     * @return
+     */
+    public final boolean getSkipLargerAfterTimeout() {
+        return skip_larger_after_timeout;
+    }
 
-            } catch (IOException e) {
-                LOGGER.info("Cannot launch brower");
-            }
+    /**
+     *
+     * @return the metric used to race the tests, or null
+     */
+    public final Metric getRacingMetric() {
+        return racing_metric;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final double getRacingConfidence() {
+        return racing_confidence;
+    }
+
+    /**
+     *
+     * @return true if the number of iterations is adaptive
+     */
+    public final boolean isAdaptive() {
+        return max_relative_half_width > 0;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final double getMaxRelativeHalfWidth() {
+        return max_relative_half_width;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final int getMinIterations() {
+        return min_iterations;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final GcPolicy getGcPolicy() {
+        return gc_policy;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final ForkMode getForkMode() {
+        return fork_mode;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final int getWarmupIterations() {
+        return warmup_iterations;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final int getSteadyStateWindow() {
+        return steady_state_window;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final double getSteadyStateCV() {
+        return steady_state_cv;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final int getMaxWarmupIterations() {
+        return max_warmup_iterations;
+    }
+
+    /**
+     * Serialized copy of this case, sent to the child and worker JVMs (only
+     * available while the case is running).
+     * @return null if the case is not serializable
+     */
+    final byte[] getConfig() {
+        return config;
+    }
+
+    /**
+     * Read a case serialized by getConfig().
+     * @param bytes
+     * @return
+     * @throws IOException if the case cannot be deserialized
+     */
+    static Case deserialize(final byte[] bytes) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes));
+        try {
+            return (Case) in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Cannot deserialize case", ex);
+        } finally {
+            in.close();
         }
     }
 
+    private byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(this);
+            out.close();
+        } catch (IOException ex) {
+            LOGGER.warn(
+                    "{} is not serializable ({}): child and worker JVMs use"
+                    + " its default constructor, hence the settings applied"
+                    + " after construction are ignored",
+                    getClass().getName(), ex.getMessage());
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void readObject(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        listeners = new LinkedList<Listener>();
+        sinks = new LinkedList<ResultSink>();
+    }
+
+    /**
+     * Run the garbage collector, while no test is running.
+     */
+    static void collectGarbage() {
+        System.gc();
+        System.runFinalization();
+    }
+
     private void commitToGit(final String time_tag) {
                 try {
             Repository repo = new FileRepositoryBuilder()
@@ -393,39 +1763,3 @@ public class Case implements Serializable {
         return description;
     }
 }
-
-/**
- * A wrapper around the task, to be submitted to the executor.
- * @author tibo
- */
-class RunnableTest implements Runnable {
-
-    private final TestInterface test;
-    private final double value;
-    private final List<TestResult> resultset;
-
-    RunnableTest(
-            final TestInterface test,
-            final double value,
-            final List<TestResult> resultset) {
-        this.test = test;
-        this.value = value;
-        this.resultset = resultset;
-    }
-
-    public void run() {
-        try {
-            long start_time = System.currentTimeMillis();
-            double[] values = test.run(value);
-            long runtime = System.currentTimeMillis() - start_time;
-            resultset.add(
-                    new TestResult(values, runtime, test, value));
-
-            System.gc();
-            System.runFinalization();
-        } catch (Exception ex) {
-            LoggerFactory.getLogger(RunnableTest.class).warn(ex.getMessage());
-        }
-    }
-
-}
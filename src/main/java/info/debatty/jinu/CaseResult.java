@@ -30,21 +30,29 @@ import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.stat.StatUtils;
 import org.apache.commons.math3.stat.inference.TTest;
 
 /**
  *
  * @author Thibault Debatty
  */
-public class CaseResult {
+public class CaseResult implements ResultSink {
 
     private static final String CLASSPATH_KEY = "java.class.path";
+    private static final double[] LATENCY_PERCENTILES =
+            {0, 50, 75, 90, 95, 99, 99.5, 99.9, 99.95, 99.99, 99.999};
+    private static final double NANOS_PER_MICRO = 1000;
+    private static final double PERCENT = 100;
 
     private String hostname;
     private String title = "";
@@ -54,8 +62,23 @@ public class CaseResult {
     private Case testcase;
     private final String[] classpath;
 
-    private HashMap<FactoryAndValue, List<TestResult>> results;
+    private ResultStore store;
+    private List<TestInterval> intervals = null;
+    private SimilarityEngine similarity = null;
+    private final HashMap<TestFactory, String> test_names =
+            new HashMap<TestFactory, String>();
+    private HashMap<FactoryAndValue, Integer> warmups =
+            new HashMap<FactoryAndValue, Integer>();
+    private List<ForkInfo> forks = new LinkedList<ForkInfo>();
+    private final HashMap<TestFactory, Integer> eliminations =
+            new HashMap<TestFactory, Integer>();
+    private final HashMap<FactoryAndValue, TestFailures> failures =
+            new HashMap<FactoryAndValue, TestFailures>();
     private final HashMap<TestFactory, String> sources;
+    private final List<String> merged_journals = new LinkedList<String>();
+    private String baseline = null;
+    private List<BaselineComparison> comparisons =
+            new LinkedList<BaselineComparison>();
     private long runtime;
 
     /**
@@ -145,9 +168,121 @@ public class CaseResult {
      */
     public final void setResults(
             final HashMap<FactoryAndValue, List<TestResult>> results) {
-        this.results = results;
+        synchronized (this) {
+            store = null;
+            intervals = null;
+            similarity = null;
+        }
+        for (Map.Entry<FactoryAndValue, List<TestResult>> entry
+                : results.entrySet()) {
+            for (TestResult result : entry.getValue()) {
+                getStore().add(entry.getKey().getTest(), result);
+            }
+        }
+    }
+
+    /**
+     * The results of the case, in columnar format.
+     * @return
+     */
+    public final synchronized ResultStore getStore() {
+        if (store == null) {
+            store = new ResultStore(
+                    testcase.getTests(), testcase.getParamValues());
+        }
+        return store;
+    }
+
+
+    /**
+     * Nothing to do.
+     * @param report
+     */
+    public final void open(final CaseResult report) {
+    }
+
+    /**
+     * Add the result to this report.
+     * @param result
+     */
+    public final void write(final TestResult result) {
+        try {
+            getStore().add(result.getFactory(), result);
+        } catch (IllegalArgumentException ex) {
+            // more values than the first result of the case
+            addFailure(
+                    new FactoryAndValue(
+                            result.getFactory(), result.getParamValue()),
+                    ex.getMessage());
+            return;
+        }
+        synchronized (this) {
+            // a new cell may have received its first result
+            intervals = null;
+            similarity = null;
+        }
+    }
+
+    /**
+     * Nothing to do.
+     * @param report
+     */
+    public final void close(final CaseResult report) {
+    }
+
+    /**
+     *
+     * @param warmups number of warmup runs for each test and param value
+     */
+    final synchronized void setWarmups(
+            final HashMap<FactoryAndValue, Integer> warmups) {
+        this.warmups = warmups;
+        this.intervals = null;
+    }
+
+    /**
+     * Get the number of warmup runs that were discarded for this test and
+     * param value.
+     * @param test
+     * @param param_value
+     * @return
+     */
+    public final int getWarmup(
+            final TestFactory test, final double param_value) {
+        Integer count = warmups.get(new FactoryAndValue(test, param_value));
+        if (count == null) {
+            return 0;
+        }
+        return count;
     }
 
+    /**
+     *
+     * @param forks startup times of the child JVMs
+     */
+    final void setForks(final List<ForkInfo> forks) {
+        this.forks = forks;
+    }
+
+    /**
+     * Child JVMs that were started to run the tests (in fork mode).
+     * @return
+     */
+    public final List<ForkInfo> getForks() {
+        return forks;
+    }
+
+    /**
+     * Get the total number of warmup runs that were discarded.
+     * @return
+     */
+    public final int getWarmupTotal() {
+        int total = 0;
+        for (Integer count : warmups.values()) {
+            total += count;
+        }
+        return total;
+    }
 
     /**
      *
@@ -209,13 +344,135 @@ public class CaseResult {
      */
     public final List<TestResult> getResults() {
         LinkedList<TestResult> allresults = new LinkedList<TestResult>();
-        for (List<TestResult> r : results.values()) {
-            allresults.addAll(r);
+        ResultStore results = getStore();
+        for (TestFactory test : results.getTests()) {
+            TestInterface instance = test.newInstance();
+            for (double param_value : results.getParamValues()) {
+                ResultStore.Cell cell = results.getCell(test, param_value);
+                for (int row = 0; row < cell.size(); row++) {
+                    allresults.add(cell.getResult(
+                            row, test, instance, param_value));
+                }
+            }
         }
 
         return allresults;
     }
 
+    /**
+     * Record a run that threw an exception.
+     * @param key
+     * @param error
+     */
+    final synchronized void addFailure(
+            final FactoryAndValue key, final String error) {
+        getFailures(key).addFailure(error);
+    }
+
+    /**
+     * Record a run that exceeded the timeout.
+     * @param key
+     */
+    final synchronized void addTimeout(final FactoryAndValue key) {
+        getFailures(key).addTimeout();
+    }
+
+    /**
+     * Record a run that was skipped.
+     * @param key
+     */
+    final synchronized void addSkipped(final FactoryAndValue key) {
+        getFailures(key).addSkipped();
+    }
+
+    /**
+     * If the case skips larger param values after a timeout, check if this
+     * test already timed out with a smaller param value.
+     * @param key
+     * @return
+     */
+    final synchronized boolean isSkipped(final FactoryAndValue key) {
+        // the points of a design have no order
+        if (!testcase.getSkipLargerAfterTimeout()
+                || testcase.getParameterPoints() != null) {
+            return false;
+        }
+
+        for (TestFailures test_failures : failures.values()) {
+            if (test_failures.getTest() == key.getTest()
+                    && test_failures.getTimeouts() > 0
+                    && test_failures.getParamValue() < key.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Failures, timeouts and skipped runs, for each test and param value
+     * that has at least one.
+     * @return
+     */
+    public final synchronized List<TestFailures> getFailures() {
+        LinkedList<TestFailures> list = new LinkedList<TestFailures>();
+        for (TestFactory test : getTests()) {
+            for (double param_value : getParamValues()) {
+                TestFailures test_failures =
+                        failures.get(new FactoryAndValue(test, param_value));
+                if (test_failures != null) {
+                    list.add(test_failures);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Total number of runs that threw an exception.
+     * @return
+     */
+    public final synchronized int getFailureCount() {
+        int count = 0;
+        for (TestFailures test_failures : failures.values()) {
+            count += test_failures.getFailures();
+        }
+        return count;
+    }
+
+    /**
+     * Total number of runs that exceeded the timeout.
+     * @return
+     */
+    public final synchronized int getTimeoutCount() {
+        int count = 0;
+        for (TestFailures test_failures : failures.values()) {
+            count += test_failures.getTimeouts();
+        }
+        return count;
+    }
+
+    private TestFailures getFailures(final FactoryAndValue key) {
+        TestFailures test_failures = failures.get(key);
+        if (test_failures == null) {
+            test_failures = new TestFailures(key);
+            failures.put(key, test_failures);
+        }
+        return test_failures;
+    }
+
+    /**
+     * Number of runs that spent more than half of their time in garbage
+     * collection.
+     * @return
+     */
+    public final int getGcDominatedCount() {
+        int count = 0;
+        for (TestInterval interval : getIntervals()) {
+            count += interval.getGcDominated();
+        }
+        return count;
+    }
+
     /**
      *
      * @return
@@ -244,34 +501,139 @@ public class CaseResult {
      *
      * @return
      */
-    public final List<TestInterval> getIntervals() {
-        LinkedList<TestInterval> intervals = new LinkedList<TestInterval>();
-        for (FactoryAndValue test_and_value : results.keySet()) {
-            intervals.add(
-                    TestInterval.forResults(
-                            test_and_value,
-                            results.get(test_and_value)));
+    public final synchronized List<TestInterval> getIntervals() {
+        if (intervals != null) {
+            return intervals;
+        }
+
+        intervals = new LinkedList<TestInterval>();
+        ResultStore results = getStore();
+        for (TestFactory test : results.getTests()) {
+            for (double param_value : results.getParamValues()) {
+                TestInterval interval =
+                        results.getCell(test, param_value).getInterval();
+                if (interval == null) {
+                    continue;
+                }
+
+                interval.setWarmup(getWarmup(test, param_value));
+                intervals.add(interval);
+            }
         }
 
         return intervals;
     }
 
+    /**
+     * Get the simple class name of a test (the factory is only called once
+     * per test).
+     * @param test
+     * @return
+     */
+    public final synchronized String getTestName(final TestFactory test) {
+        String name = test_names.get(test);
+        if (name == null) {
+            name = test.newInstance().getClass().getSimpleName();
+            test_names.put(test, name);
+        }
+        return name;
+    }
+
     /**
      *
      * @return
      */
     public final int getValuesCount() {
-        return results.entrySet().iterator().next()
-                .getValue().iterator().next().getValues().length;
+        return getStore().getValuesCount();
     }
 
     /**
-     *
+     * Mean of this metric for this test and param value.
+     * @param test
+     * @param metric
+     * @param param_value
+     * @return NaN if there is no result
+     */
+    public final double getMean(
+            final TestFactory test,
+            final Metric metric,
+            final double param_value) {
+
+        ResultStore.Cell cell = getStore().getCell(test, param_value);
+        if (cell == null || cell.size() == 0) {
+            return Double.NaN;
+        }
+        return StatUtils.mean(cell.getMetrics(metric.getColumn()));
+    }
+
+    /**
+     * One-sided p-value of the hypothesis that test has a larger mean than
+     * other_test for this metric (Welch's t-test).
+     * @param test
+     * @param other_test
+     * @param metric
+     * @param param_value
+     * @return NaN if one of the tests has less than 2 results, or if the
+     * test cannot be computed (no variance)
+     */
+    public final double getPValue(
+            final TestFactory test,
+            final TestFactory other_test,
+            final Metric metric,
+            final double param_value) {
+
+        ResultStore.Cell cell = getStore().getCell(test, param_value);
+        ResultStore.Cell other_cell =
+                getStore().getCell(other_test, param_value);
+        if (cell.size() < 2 || other_cell.size() < 2) {
+            return Double.NaN;
+        }
+
+        double[] sample = cell.getMetrics(metric.getColumn());
+        double[] other_sample = other_cell.getMetrics(metric.getColumn());
+        double p_value;
+        try {
+            p_value = new TTest().tTest(sample, other_sample) / 2;
+        } catch (MathIllegalArgumentException ex) {
+            return Double.NaN;
+        }
+
+        if (StatUtils.mean(sample) > StatUtils.mean(other_sample)) {
+            return p_value;
+        }
+        return 1 - p_value;
+    }
+
+    /**
+     * Record that this test was eliminated (in racing mode).
+     * @param test
+     * @param iteration last iteration of the test
+     */
+    final synchronized void eliminate(
+            final TestFactory test, final int iteration) {
+        eliminations.put(test, iteration);
+    }
+
+    /**
+     * In racing mode, the iteration after which this test was eliminated.
+     * @param test
+     * @return -1 if the test was not eliminated
+     */
+    public final synchronized int getEliminatedAt(final TestFactory test) {
+        Integer iteration = eliminations.get(test);
+        if (iteration == null) {
+            return -1;
+        }
+        return iteration;
+    }
+
+    /**
+     * P-value of the Welch t-test between the values returned by two tests.
      * @param test
      * @param other_test
      * @param result
      * @param param_value
-     * @return
+     * @return NaN if one of the tests has less than 2 results
      */
     public final double getSimilarity(
             final TestFactory test,
@@ -279,26 +641,49 @@ public class CaseResult {
             final long result,
             final double param_value) {
 
-        double[] test_results = new double[testcase.getIterations()];
-        double[] other_results = new double[testcase.getIterations()];
-
-        int i = 0;
-        for (TestResult tr : results.get(
-                new FactoryAndValue(test, param_value))) {
-            test_results[i] = tr.getValue(result);
-            i++;
+        SampleComparison comparison =
+                getComparison(test, other_test, result, param_value);
+        if (comparison == null) {
+            return Double.NaN;
         }
+        return comparison.getTTestPValue();
+    }
 
-        i = 0;
-        FactoryAndValue test_and_value =
-                new FactoryAndValue(other_test, param_value);
-        for (TestResult tr : results.get(test_and_value)) {
-            other_results[i] = tr.getValue(result);
-            i++;
-        }
+    /**
+     * Comparison of the values returned by two tests: t-test, Mann-Whitney
+     * test and bootstrap interval of the difference of medians. All pairs
+     * of tests are compared once (in parallel), and the comparisons are
+     * cached until a new result arrives.
+     * @param test
+     * @param other_test
+     * @param result index of the value returned by the tests
+     * @param param_value
+     * @return null if the test, value or param value is unknown
+     */
+    public final SampleComparison getComparison(
+            final TestFactory test,
+            final TestFactory other_test,
+            final long result,
+            final double param_value) {
+
+        return getSimilarityEngine().get(
+                test, other_test, (int) result, param_value);
+    }
 
-        TTest t_test = new TTest();
-        return t_test.tTest(test_results, other_results);
+    /**
+     *
+     * @return the comparisons of all pairs of tests
+     */
+    final synchronized SimilarityEngine getSimilarityEngine() {
+        if (similarity == null) {
+            try {
+                similarity = new SimilarityEngine(getStore());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+        return similarity;
     }
 
     /**
@@ -319,6 +704,57 @@ public class CaseResult {
         sources.put(test, test_source);
     }
 
+    /**
+     * Label of this param value: the param value itself, or the
+     * corresponding point if the case runs on a parameter space.
+     * @param param_value
+     * @return
+     */
+    public final String getParamLabel(final double param_value) {
+        List<ParameterPoint> points = testcase.getParameterPoints();
+        if (points == null) {
+            return Double.toString(param_value);
+        }
+        return points.get((int) param_value).toString();
+    }
+
+    /**
+     * Labels of the points of the parameter space (used for the x axis of
+     * the charts), as a JSON array.
+     * @return null (JSON) if the case does not run on a parameter space
+     */
+    public final String getJsonPointLabels() {
+        List<ParameterPoint> points = testcase.getParameterPoints();
+        if (points == null) {
+            return "null";
+        }
+
+        List<String> labels = new LinkedList<String>();
+        for (ParameterPoint point : points) {
+            labels.add(point.toString());
+        }
+        return new Gson().toJson(labels);
+    }
+
+    /**
+     * Add the point of this interval to the dataset of its test. x is the
+     * param value: on a parameter space, the index of the point, which the
+     * charts replace by its label (see {@link #getJsonPointLabels()}).
+     */
+    private void addPoint(
+            final HashMap<TestFactory, Dataset> datasets,
+            final TestInterval interval,
+            final double y) {
+
+        TestFactory test = interval.getTest();
+        Dataset dataset = datasets.get(test);
+        if (dataset == null) {
+            dataset = new Dataset(getTestName(test));
+            datasets.put(test, dataset);
+        }
+        dataset.add(new XY(interval.getParamValue(), y));
+    }
+
     /**
      * Get the JSON representation of the results, to use with GraphJS.
      * @param vid
@@ -329,17 +765,26 @@ public class CaseResult {
         HashMap<TestFactory, Dataset> datasets =
                 new HashMap<TestFactory, Dataset>();
         for (TestInterval interval : getIntervals()) {
+            addPoint(
+                    datasets,
+                    interval,
+                    interval.getValues()[(int) vid].getMean());
+        }
 
-            TestFactory test = interval.getTest();
-            Dataset dataset = datasets.get(test);
-            if (dataset == null) {
-                dataset = new Dataset(
-                        test.newInstance().getClass().getSimpleName());
-                datasets.put(test, dataset);
-            }
-            dataset.add(new XY(
-                    interval.getParamValue(),
-                    interval.getValues()[(int) vid].getMean()));
+        Gson gson = new Gson();
+        return gson.toJson(datasets.values());
+    }
+
+    /**
+     * Get the JSON representation of memory allocation results.
+     * @return
+     */
+    public final String getJsonAllocatedDataset() {
+
+        HashMap<TestFactory, Dataset> datasets =
+                new HashMap<TestFactory, Dataset>();
+        for (TestInterval interval : getIntervals()) {
+            addPoint(datasets, interval, interval.getAllocated().getMean());
         }
 
         Gson gson = new Gson();
@@ -347,29 +792,96 @@ public class CaseResult {
     }
 
     /**
-     * Get the JSON representation of time results.
+     * Get the JSON representation of throughput results (runs or operations
+     * per second).
      * @return
      */
-    public final String getJsonTimeDataset() {
+    public final String getJsonThroughputDataset() {
 
         HashMap<TestFactory, Dataset> datasets =
                 new HashMap<TestFactory, Dataset>();
         for (TestInterval interval : getIntervals()) {
+            // no run of this pair lasted long enough to be measured
+            if (interval.getThroughput().getN() == 0) {
+                continue;
+            }
+            addPoint(datasets, interval, interval.getThroughput().getMean());
+        }
+
+        Gson gson = new Gson();
+        return gson.toJson(datasets.values());
+    }
+
+    /**
+     * Get the JSON representation of the latency percentiles of each test
+     * and param value (in us). x is the number of nines of the percentile
+     * (1 for p90, 2 for p99 etc.), so the tail is not squeezed.
+     * @return
+     */
+    public final String getJsonLatencyDataset() {
+
+        LinkedList<Dataset> datasets = new LinkedList<Dataset>();
+        for (TestInterval interval : getIntervals()) {
+            LatencyHistogram latencies = interval.getLatencies();
+            if (latencies == null) {
+                continue;
+            }
+
+            Dataset dataset = new Dataset(
+                    getTestName(interval.getTest()) + " ("
+                    + getParamLabel(interval.getParamValue()) + ")");
+            for (double percentile : LATENCY_PERCENTILES) {
+                dataset.add(new XY(
+                        -Math.log10(1 - percentile / PERCENT),
+                        latencies.getValueAtPercentile(percentile)
+                                / NANOS_PER_MICRO));
+            }
+            datasets.add(dataset);
+        }
+
+        Gson gson = new Gson();
+        return gson.toJson(datasets);
+    }
+
+    /**
+     * Get the JSON representation of time results: wall clock, cpu and user
+     * time of each test.
+     * @return
+     */
+    public final String getJsonTimeDataset() {
+
+        HashMap<TestFactory, Dataset[]> datasets =
+                new HashMap<TestFactory, Dataset[]>();
+        for (TestInterval interval : getIntervals()) {
 
             TestFactory test = interval.getTest();
-            Dataset dataset = datasets.get(test);
-            if (dataset == null) {
-                dataset = new Dataset(
-                        test.newInstance().getClass().getSimpleName());
-                datasets.put(test, dataset);
+            Dataset[] test_datasets = datasets.get(test);
+            if (test_datasets == null) {
+                String name = getTestName(test);
+                test_datasets = new Dataset[]{
+                    new Dataset(name + " (wall)"),
+                    new Dataset(name + " (cpu)"),
+                    new Dataset(name + " (user)")};
+                datasets.put(test, test_datasets);
             }
-            dataset.add(new XY(
+            test_datasets[0].add(new XY(
                     interval.getParamValue(),
                     interval.getRuntime().getMean()));
+            test_datasets[1].add(new XY(
+                    interval.getParamValue(),
+                    interval.getCpuTime().getMean()));
+            test_datasets[2].add(new XY(
+                    interval.getParamValue(),
+                    interval.getUserTime().getMean()));
+        }
+
+        LinkedList<Dataset> all = new LinkedList<Dataset>();
+        for (Dataset[] test_datasets : datasets.values()) {
+            Collections.addAll(all, test_datasets);
         }
 
         Gson gson = new Gson();
-        return gson.toJson(datasets.values());
+        return gson.toJson(all);
     }
 
     /**
@@ -387,6 +899,66 @@ public class CaseResult {
     public final long getRuntime() {
         return runtime;
     }
+
+    /**
+     *
+     * @param baseline time tag of the baseline
+     * @param comparisons
+     */
+    final void setComparisons(
+            final String baseline,
+            final List<BaselineComparison> comparisons) {
+        this.baseline = baseline;
+        this.comparisons = comparisons;
+    }
+
+    /**
+     * Time tag of the baseline the results were compared to.
+     * @return null if there is no baseline
+     */
+    public final String getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Comparison of each test, param value and metric with the baseline.
+     * @return empty if there is no baseline
+     */
+    public final List<BaselineComparison> getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     *
+     * @return the comparisons that are regressions
+     */
+    public final List<BaselineComparison> getRegressions() {
+        LinkedList<BaselineComparison> regressions =
+                new LinkedList<BaselineComparison>();
+        for (BaselineComparison comparison : comparisons) {
+            if (comparison.isRegression()) {
+                regressions.add(comparison);
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     *
+     * @param name
+     */
+    final void addMergedJournal(final String name) {
+        merged_journals.add(name);
+    }
+
+    /**
+     * Names of the journals that were merged to produce this report (empty
+     * if the tests were run).
+     * @return
+     */
+    public final List<String> getMergedJournals() {
+        return merged_journals;
+    }
 }
 
 /**
@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Appends each result to a CSV file, as soon as it is available. If the case
+ * runs on a parameter space, the values of the axes are appended to each
+ * line. In distributed mode, the worker that produced the result is appended
+ * too.
+ *
+ * @author Thibault Debatty
+ */
+public class CsvSink implements ResultSink {
+
+    private static final String SEPARATOR = ";\t";
+
+    private final String filename;
+    private Writer writer;
+    private List<ParameterPoint> points;
+    private boolean distributed;
+    private boolean header_written = false;
+
+    /**
+     *
+     * @param filename
+     */
+    public CsvSink(final String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Create the file, and write the description of the case.
+     * @param report
+     * @throws IOException if the file cannot be created
+     */
+    public final void open(final CaseResult report) throws IOException {
+        points = report.getTestcase().getParameterPoints();
+        distributed = !report.getTestcase().getWorkers().isEmpty();
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(filename), Charset.forName("UTF-8")));
+        writer.write("## case ");
+        writer.write(report.getId());
+        writer.write("\n## ");
+        writer.write(report.getCaseDescription());
+        writer.write("\n");
+        writer.flush();
+    }
+
+    /**
+     * Append the result to the file.
+     * @param result
+     * @throws IOException if the result cannot be written
+     */
+    public final void write(final TestResult result) throws IOException {
+        if (!header_written) {
+            String header = result.getHeader();
+            writer.write(header.substring(0, header.length() - 1));
+            if (points != null) {
+                for (String name : points.get(0).getNames()) {
+                    writer.write(name);
+                    writer.write(SEPARATOR);
+                }
+            }
+            if (distributed) {
+                writer.write("host");
+                writer.write(SEPARATOR);
+            }
+            writer.write('\n');
+            header_written = true;
+        }
+        result.writeCsv(writer);
+        if (points != null) {
+            for (double value
+                    : points.get((int) result.getParamValue()).getValues()) {
+                writer.write(Double.toString(value));
+                writer.write(SEPARATOR);
+            }
+        }
+        if (distributed) {
+            writer.write(String.valueOf(result.getHost()));
+            writer.write(SEPARATOR);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Write the number of warmup runs and failures, and close the file.
+     * @param report
+     * @throws IOException if the file cannot be written
+     */
+    public final void close(final CaseResult report) throws IOException {
+        for (TestFactory factory : report.getTests()) {
+            String name = factory.newInstance().getClass().getName();
+            for (double param_value : report.getParamValues()) {
+                writer.write("## warmup " + name + " "
+                        + report.getParamLabel(param_value) + " : "
+                        + report.getWarmup(factory, param_value)
+                        + " runs discarded\n");
+            }
+        }
+
+        for (TestFailures failures : report.getFailures()) {
+            writer.write("## failures "
+                    + failures.getTest().newInstance().getClass().getName()
+                    + " " + report.getParamLabel(failures.getParamValue())
+                    + " : "
+                    + failures.getFailures() + " failed, "
+                    + failures.getTimeouts() + " timed out, "
+                    + failures.getSkipped() + " skipped\n");
+        }
+        writer.close();
+    }
+}
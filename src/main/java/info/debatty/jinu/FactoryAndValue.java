@@ -25,17 +25,26 @@
 package info.debatty.jinu;
 
 /**
- * Captures a test instance, and the value that was fed to the test.
+ * Captures a test instance, and the value that was fed to the test. If the
+ * case runs on a parameter space, the value is the index of the point.
  * @author Thibault Debatty
  */
 public class FactoryAndValue {
 
     private final TestFactory factory;
     private final double value;
+    private final ParameterPoint point;
 
     FactoryAndValue(final TestFactory factory, final double param_value) {
         this.factory = factory;
         this.value = param_value;
+        this.point = null;
+    }
+
+    FactoryAndValue(final TestFactory factory, final ParameterPoint point) {
+        this.factory = factory;
+        this.value = point.getIndex();
+        this.point = point;
     }
 
     /**
@@ -54,6 +63,14 @@ public class FactoryAndValue {
         return value;
     }
 
+    /**
+     *
+     * @return the point of the parameter space, or null
+     */
+    public final ParameterPoint getPoint() {
+        return point;
+    }
+
     @Override
     public final int hashCode() {
         int hash = 5;
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixtures of the case, built once per param value (or per point, with a
+ * {@link PointFixtureProvider}) and shared by all tests and threads. The
+ * size of a fixture is estimated as the memory allocated while building it.
+ * When the total exceeds the budget, the least recently used fixtures are
+ * evicted (and rebuilt if they are needed again).
+ *
+ * @author Thibault Debatty
+ */
+final class FixtureCache {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(FixtureCache.class);
+
+    private final FixtureProvider<?> provider;
+    private final long budget;
+    private final LinkedHashMap<Object, Entry> entries =
+            new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long size = 0;
+
+    FixtureCache(final FixtureProvider<?> provider, final long budget) {
+        this.provider = provider;
+        this.budget = budget;
+    }
+
+    /**
+     * Get the fixture for this param value or point. The first thread that
+     * needs it builds it, other threads that need the same fixture wait.
+     * @param key
+     * @return
+     * @throws Exception if the fixture cannot be built
+     */
+    Object get(final FactoryAndValue key) throws Exception {
+        Object id = key.getPoint();
+        if (id == null || !(provider instanceof PointFixtureProvider)) {
+            id = key.getValue();
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+            if (entry == null) {
+                entry = new Entry(id);
+                entries.put(id, entry);
+            }
+        }
+        return entry.get();
+    }
+
+    private synchronized void built(final Entry entry) {
+        entry.counted = true;
+        size += entry.size;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > budget && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest == entry || !eldest.counted) {
+                continue;
+            }
+            iterator.remove();
+            size -= eldest.size;
+            LOGGER.debug("Evicted fixture for {}", eldest.id);
+        }
+    }
+
+    private synchronized void failed(final Entry entry) {
+        entries.remove(entry.id);
+    }
+
+    /**
+     * The fixture for one param value (Double) or point, built on first
+     * access.
+     */
+    private final class Entry {
+
+        private final Object id;
+        private Object fixture = null;
+        private long size = -1;
+        private boolean counted = false;
+
+        Entry(final Object id) {
+            this.id = id;
+        }
+
+        synchronized Object get() throws Exception {
+            if (size >= 0) {
+                return fixture;
+            }
+
+            Probe probe = new Probe();
+            probe.start();
+            try {
+                if (id instanceof ParameterPoint) {
+                    fixture = ((PointFixtureProvider<?>) provider).build(
+                            (ParameterPoint) id);
+                } else {
+                    fixture = provider.build((Double) id);
+                }
+            } catch (Exception ex) {
+                failed(this);
+                throw ex;
+            }
+            probe.stop();
+            size = probe.getAllocated();
+            built(this);
+            return fixture;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.Serializable;
+
+/**
+ * Builds the input of the tests for a param value (for example a dataset of
+ * size param). When a provider is registered on the case, each fixture is
+ * built once per param value, cached, and handed to the tests that implement
+ * {@link FixtureTest} before their runs, outside of the timed region.
+ *
+ * The same fixture is shared by all tests and all threads, hence the tests
+ * must not modify it. The provider is serialized with its case, to configure
+ * the child and worker JVMs.
+ *
+ * On a parameter space, the param value is the index of the point: use a
+ * {@link PointFixtureProvider} to build the fixtures from the points.
+ *
+ * @author Thibault Debatty
+ * @param <T> type of the fixture
+ */
+public interface FixtureProvider<T> extends Serializable {
+
+    /**
+     * Build the fixture for this param value.
+     * @param param
+     * @return
+     * @throws Exception if the fixture cannot be built (the runs that need
+     * it are recorded as failures)
+     */
+    T build(double param) throws Exception;
+}
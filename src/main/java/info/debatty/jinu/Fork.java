@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Entry point of the child JVMs used in fork mode.
+ *
+ * The child reads the configured case (serialized by the parent JVM, or
+ * instantiated with its default constructor if the case is not
+ * serializable), then reads requests (index of the test, param value) from
+ * stdin and writes the results to stdout. Anything the tests write to
+ * System.out is redirected to System.err. Each test and param value is warmed
+ * up the first time it is requested.
+ *
+ * @author Thibault Debatty
+ */
+public final class Fork {
+
+    private Fork() {
+    }
+
+    /**
+     * Run the child JVM.
+     * @param args the name of the class of the case
+     * @throws Exception if the case cannot be instantiated
+     */
+    public static void main(final String[] args) throws Exception {
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(System.in));
+
+        serve(args[0], in, out);
+    }
+
+    /**
+     * Read the configuration of the case, then run the requested tests until
+     * the input stream is closed. Also used by worker JVMs, which write
+     * heartbeats concurrently: writes to out are synchronized on out.
+     * @param case_name class of the case
+     * @param in
+     * @param out
+     * @throws IOException if the communication fails, or the case cannot be
+     * instantiated
+     */
+    static void serve(
+            final String case_name,
+            final DataInputStream in,
+            final DataOutputStream out) throws IOException {
+
+        Case testcase = readCase(case_name, in);
+        List<TestFactory> tests = testcase.getTests();
+
+        int warmup_iterations = in.readInt();
+        int window = in.readInt();
+        double max_cv = in.readDouble();
+        int max_warmup_iterations = in.readInt();
+        boolean collect_garbage = in.readBoolean();
+
+        testcase.openDatasets();
+        synchronized (out) {
+            out.writeInt(ForkedJvm.READY);
+            out.flush();
+        }
+
+        HashSet<FactoryAndValue> warm = new HashSet<FactoryAndValue>();
+        InstancePool instances = testcase.newInstancePool();
+        while (true) {
+            int test_index;
+            try {
+                test_index = in.readInt();
+            } catch (EOFException ex) {
+                break;
+            }
+            double param_value = in.readDouble();
+
+            TestFactory factory = tests.get(test_index);
+            TestInterface test = instances.get(factory);
+
+            FactoryAndValue key = testcase.getKey(factory, param_value);
+            int warmup = 0;
+            if (warm.add(key)) {
+                warmup = new WarmupTest(
+                        instances,
+                        key,
+                        warmup_iterations,
+                        window,
+                        max_cv,
+                        max_warmup_iterations).call();
+            }
+
+            Probe probe = new Probe();
+            double[] values = null;
+            String error = null;
+            try {
+                values = instances.run(test, key, probe);
+            } catch (Exception ex) {
+                error = String.valueOf(ex.getMessage());
+            }
+
+            synchronized (out) {
+                out.writeBoolean(error == null);
+                out.writeInt(warmup);
+                if (error == null) {
+                    out.writeInt(values.length);
+                    for (double value : values) {
+                        out.writeDouble(value);
+                    }
+                    probe.write(out);
+                    LatencyHistogram.write(out, probe.getLatencies());
+                } else {
+                    out.writeUTF(error);
+                }
+                out.flush();
+            }
+
+            if (collect_garbage) {
+                Case.collectGarbage();
+            }
+        }
+    }
+
+    private static Case readCase(
+            final String case_name, final DataInputStream in)
+            throws IOException {
+
+        int length = in.readInt();
+        if (length >= 0) {
+            byte[] config = new byte[length];
+            in.readFully(config);
+            return Case.deserialize(config);
+        }
+
+        try {
+            return (Case) Class.forName(case_name).newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException("Cannot instantiate " + case_name, ex);
+        }
+    }
+}
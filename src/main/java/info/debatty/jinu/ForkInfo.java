@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Describes a child JVM that was started to run tests in fork mode.
+ *
+ * @author Thibault Debatty
+ */
+public final class ForkInfo {
+
+    private final String label;
+    private final double startup_time;
+
+    /**
+     *
+     * @param label
+     * @param startup_time time required to start the JVM (in ms)
+     */
+    ForkInfo(final String label, final double startup_time) {
+        this.label = label;
+        this.startup_time = startup_time;
+    }
+
+    /**
+     * The test (and param value or iteration) that ran in this JVM.
+     * @return
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Time required to start the JVM and instantiate the case (in ms). This
+     * time is not included in the runtime of the tests.
+     * @return
+     */
+    public double getStartupTime() {
+        return startup_time;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Defines if (and how) tests are executed in child JVMs, to isolate them from
+ * each other (JIT profiles, heap state, class loading...).
+ *
+ * @author Thibault Debatty
+ */
+public enum ForkMode {
+
+    /**
+     * All tests run in the JVM of the case.
+     */
+    NONE,
+
+    /**
+     * Each test and param value runs in its own child JVM. The JVM is reused
+     * for the warmup and all the iterations of this test and param value.
+     */
+    PER_TEST,
+
+    /**
+     * Each iteration of each test runs in a fresh child JVM. The JVM is reused
+     * for all param values of this iteration, and each param value is warmed
+     * up again in each JVM.
+     */
+    PER_ITERATION
+}
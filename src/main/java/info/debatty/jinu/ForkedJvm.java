@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handle to a child JVM, used to run tests in fork mode. The JVM is started
+ * when the first test is submitted, and reused for all following tests until
+ * close() is called.
+ *
+ * The JVM is also the executor of its tests: they are queued, and run one
+ * after the other by a single task of the thread pool. Hence a thread of the
+ * pool never waits for a busy JVM, and the queued runs of a JVM are
+ * finished before the thread moves to the next one.
+ *
+ * @author Thibault Debatty
+ */
+final class ForkedJvm implements Executor {
+
+    /**
+     * Written by the child JVM when it is ready to run tests.
+     */
+    static final int READY = 0x4a494e55;
+
+    /**
+     * Written every HEARTBEAT_INTERVAL ms by worker JVMs, between and during
+     * the runs, so the coordinator notices when a worker host is lost.
+     */
+    static final int HEARTBEAT = 2;
+
+    /**
+     * (ms).
+     */
+    static final int HEARTBEAT_INTERVAL = 1000;
+
+    private static final int BITS_PER_BYTE = 8;
+    private static final int READY_BYTES = 4;
+
+    private static final double NANOS_PER_MILLI = 1E6;
+
+    private final String label;
+    private final List<String> command;
+    private final Case testcase;
+    private final Executor pool;
+    private final LinkedList<ForkInfo> startups = new LinkedList<ForkInfo>();
+    private final LinkedList<Runnable> queue = new LinkedList<Runnable>();
+    private boolean draining = false;
+    private boolean finished = false;
+
+    private final HashSet<FactoryAndValue> warm =
+            new HashSet<FactoryAndValue>();
+
+    private volatile Process process;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    /**
+     *
+     * @param label
+     * @param command command line used to start the child JVM
+     * @param testcase
+     * @param pool thread pool that runs the queued tests
+     */
+    ForkedJvm(
+            final String label,
+            final List<String> command,
+            final Case testcase,
+            final Executor pool) {
+        this.label = label;
+        this.command = command;
+        this.testcase = testcase;
+        this.pool = pool;
+    }
+
+    /**
+     * Queue a task that runs a test in this JVM.
+     * @param task
+     */
+    public void execute(final Runnable task) {
+        synchronized (queue) {
+            queue.add(task);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        pool.execute(new Runnable() {
+
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * No more tests will be queued: stop the JVM as soon as the queued tests
+     * are finished.
+     */
+    void finish() {
+        synchronized (queue) {
+            finished = true;
+            if (draining) {
+                return;
+            }
+        }
+        close();
+    }
+
+    /**
+     * Run a test in the child JVM (and start the JVM if needed). The timer of
+     * the task is started once the JVM is ready. Called by the tasks queued
+     * with execute(), one at a time.
+     * @param key
+     * @param task
+     * @return
+     * @throws IOException if the communication with the child JVM fails
+     */
+    synchronized Response run(final FactoryAndValue key, final TimedTask task)
+            throws IOException {
+
+        if (process == null) {
+            start();
+        }
+
+        task.startTimer(getTimeout(testcase, key, warm.contains(key)));
+
+        try {
+            Response response = request(
+                    out,
+                    in,
+                    testcase.getTests().indexOf(key.getTest()),
+                    key.getValue());
+            warm.add(key);
+            return response;
+
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            boolean stop;
+            synchronized (queue) {
+                task = queue.poll();
+                draining = task != null;
+                stop = task == null && finished;
+            }
+
+            if (task == null) {
+                if (stop) {
+                    close();
+                }
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LoggerFactory.getLogger(ForkedJvm.class).warn(
+                        "Test failed in JVM {}: {}", label, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop the child JVM.
+     */
+    synchronized void close() {
+        if (process == null) {
+            return;
+        }
+
+        try {
+            out.close();
+            process.waitFor();
+        } catch (IOException ex) {
+            process.destroy();
+        } catch (InterruptedException ex) {
+            process.destroy();
+        }
+        process = null;
+    }
+
+    /**
+     * Kill the child JVM, without waiting for the running test (if any). The
+     * JVM will be restarted for the next test.
+     */
+    void kill() {
+        Process running = process;
+        if (running != null) {
+            running.destroy();
+        }
+    }
+
+    /**
+     * Startup times of this JVM (one per start).
+     * @return
+     */
+    synchronized List<ForkInfo> getStartups() {
+        return startups;
+    }
+
+    private void start() throws IOException {
+        long start_time = System.nanoTime();
+        warm.clear();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        process = builder.start();
+
+        out = new DataOutputStream(
+                new BufferedOutputStream(process.getOutputStream()));
+        in = new DataInputStream(
+                new BufferedInputStream(process.getInputStream()));
+
+        try {
+            handshake(testcase, out, in, label);
+        } catch (IOException ex) {
+            process.destroy();
+            process = null;
+            throw ex;
+        }
+
+        startups.add(new ForkInfo(
+                label, (System.nanoTime() - start_time) / NANOS_PER_MILLI));
+    }
+
+    /**
+     * Send the configuration of the case to a child (or worker) JVM, and wait
+     * until it is ready. The serialized case is sent if available, so the
+     * child uses the same settings (otherwise it uses the default
+     * constructor of the case).
+     * @param testcase
+     * @param out
+     * @param in
+     * @param label name of the JVM, used in error messages
+     * @throws IOException if the handshake fails
+     */
+    static void handshake(
+            final Case testcase,
+            final DataOutputStream out,
+            final DataInputStream in,
+            final String label) throws IOException {
+
+        byte[] config = testcase.getConfig();
+        if (config == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(config.length);
+            out.write(config);
+        }
+        out.writeInt(testcase.getWarmupIterations());
+        out.writeInt(testcase.getSteadyStateWindow());
+        out.writeDouble(testcase.getSteadyStateCV());
+        out.writeInt(testcase.getMaxWarmupIterations());
+        out.writeBoolean(testcase.getGcPolicy() != GcPolicy.NONE);
+        out.flush();
+
+        int ready = readStatus(in);
+        for (int i = 1; i < READY_BYTES; i++) {
+            ready = (ready << BITS_PER_BYTE) | in.readUnsignedByte();
+        }
+        if (ready != READY) {
+            throw new IOException("Invalid handshake from JVM " + label);
+        }
+    }
+
+    /**
+     * Ask a child (or worker) JVM to run a test, and read the response.
+     * @param out
+     * @param in
+     * @param test_index
+     * @param param_value
+     * @return
+     * @throws IOException if the communication fails
+     */
+    static Response request(
+            final DataOutputStream out,
+            final DataInputStream in,
+            final int test_index,
+            final double param_value) throws IOException {
+
+        out.writeInt(test_index);
+        out.writeDouble(param_value);
+        out.flush();
+
+        Response response = new Response();
+        response.ok = readStatus(in) != 0;
+        response.warmup = in.readInt();
+        if (!response.ok) {
+            response.error = in.readUTF();
+            return response;
+        }
+
+        response.values = new double[in.readInt()];
+        for (int i = 0; i < response.values.length; i++) {
+            response.values[i] = in.readDouble();
+        }
+        response.probe = Probe.read(in);
+        response.probe.setLatencies(LatencyHistogram.read(in));
+        return response;
+    }
+
+    /**
+     * Read the next byte that is not a heartbeat.
+     * @param in
+     * @return
+     * @throws IOException if the communication fails
+     */
+    private static int readStatus(final DataInputStream in)
+            throws IOException {
+        int status = in.readUnsignedByte();
+        while (status == HEARTBEAT) {
+            status = in.readUnsignedByte();
+        }
+        return status;
+    }
+
+    /**
+     * Timeout of a run in a child (or worker) JVM. The first run of each
+     * test and param value includes the warmup, so its timeout is multiplied
+     * by the maximum number of warmup runs.
+     * @param testcase
+     * @param key
+     * @param warm true if the test was already run with this param value
+     * @return (ms), 0 for no timeout
+     */
+    static long getTimeout(
+            final Case testcase,
+            final FactoryAndValue key,
+            final boolean warm) {
+
+        long timeout = testcase.getTimeout(key.getTest());
+        if (!warm) {
+            timeout *= 1 + testcase.getWarmupIterations()
+                    + testcase.getMaxWarmupIterations();
+        }
+        return timeout;
+    }
+
+    /**
+     * Result of a test that ran in the child JVM.
+     */
+    static final class Response {
+        private boolean ok;
+        private int warmup;
+        private double[] values;
+        private Probe probe;
+        private String error;
+
+        boolean isOk() {
+            return ok;
+        }
+
+        int getWarmup() {
+            return warmup;
+        }
+
+        double[] getValues() {
+            return values;
+        }
+
+        Probe getProbe() {
+            return probe;
+        }
+
+        String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.IOException;
+import java.util.Map;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A wrapper around a test that runs in a child JVM, to be submitted to the
+ * executor. If the test times out, the child JVM is killed.
+ * @author Thibault Debatty
+ */
+class ForkedTest extends TimedTask {
+
+    private final ForkedJvm jvm;
+    private final TestInterface test;
+    private final FactoryAndValue key;
+    private final int iteration;
+    private final CaseResult report;
+    private final ResultSink sink;
+    private final Map<FactoryAndValue, Integer> warmups;
+
+    ForkedTest(
+            final ForkedJvm jvm,
+            final TestInterface test,
+            final FactoryAndValue key,
+            final int iteration,
+            final CaseResult report,
+            final ResultSink sink,
+            final Map<FactoryAndValue, Integer> warmups) {
+        this.jvm = jvm;
+        this.test = test;
+        this.key = key;
+        this.iteration = iteration;
+        this.report = report;
+        this.sink = sink;
+        this.warmups = warmups;
+    }
+
+    void execute() {
+        if (report.isSkipped(key)) {
+            report.addSkipped(key);
+            return;
+        }
+
+        ForkedJvm.Response response;
+        try {
+            response = jvm.run(key, this);
+        } catch (IOException ex) {
+            if (complete()) {
+                report.addFailure(key, ex.getMessage());
+                LoggerFactory.getLogger(ForkedTest.class)
+                        .warn(ex.getMessage());
+            }
+            return;
+        }
+
+        if (!complete()) {
+            return;
+        }
+
+        if (response.getWarmup() > 0) {
+            synchronized (warmups) {
+                Integer count = warmups.get(key);
+                warmups.put(
+                        key,
+                        response.getWarmup() + (count == null ? 0 : count));
+            }
+        }
+
+        if (!response.isOk()) {
+            report.addFailure(key, response.getError());
+            LoggerFactory.getLogger(ForkedTest.class).warn(response.getError());
+            return;
+        }
+
+        try {
+            sink.write(new TestResult(
+                    response.getValues(),
+                    response.getProbe(),
+                    key.getTest(),
+                    test,
+                    key.getValue(),
+                    iteration));
+        } catch (IOException ex) {
+            LoggerFactory.getLogger(ForkedTest.class).warn(ex.getMessage());
+        }
+    }
+
+    void timeout() {
+        report.addTimeout(key);
+        LoggerFactory.getLogger(ForkedTest.class).warn(
+                "{} timed out with param {}",
+                test.getClass().getName(), key.getValue());
+        jvm.kill();
+    }
+}
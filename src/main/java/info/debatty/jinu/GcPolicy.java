@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Defines when the garbage collector is explicitly triggered during the
+ * execution of a case.
+ *
+ * @author Thibault Debatty
+ */
+public enum GcPolicy {
+
+    /**
+     * Never call System.gc().
+     */
+    NONE,
+
+    /**
+     * Call System.gc() when all tests of an iteration are finished, hence when
+     * no test is being measured. The tests of the next iteration are only
+     * started after the collection (there is a barrier between iterations).
+     */
+    BETWEEN_WAVES,
+
+    /**
+     * Call System.gc() after each run of a test. If parallelism is larger
+     * than 1, the collection may interfere with tests running in other
+     * threads.
+     */
+    AFTER_EACH_RUN
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.error.PebbleException;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import java.awt.Desktop;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Produces the HTML report when the case is finished, and opens it in a
+ * browser.
+ *
+ * @author Thibault Debatty
+ */
+public class HtmlSink implements ResultSink {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(HtmlSink.class);
+
+    private final String filename;
+    private final boolean launch_browser;
+
+    /**
+     *
+     * @param filename
+     * @param launch_browser open the report in a browser when it is ready
+     */
+    public HtmlSink(final String filename, final boolean launch_browser) {
+        this.filename = filename;
+        this.launch_browser = launch_browser;
+    }
+
+    /**
+     * Nothing to do.
+     * @param report
+     */
+    public final void open(final CaseResult report) {
+    }
+
+    /**
+     * Nothing to do: the report is produced when the case is finished.
+     * @param result
+     */
+    public final void write(final TestResult result) {
+    }
+
+    /**
+     * Produce the HTML report: the view of the report is computed first,
+     * then the template is rendered directly to the file.
+     * @param report
+     * @throws IOException if the report cannot be written
+     */
+    public final void close(final CaseResult report) throws IOException {
+        PebbleEngine engine = new PebbleEngine.Builder().build();
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("report", report);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(filename), Charset.forName("UTF-8")));
+        try {
+            context.put("view", new ReportView(report));
+            PebbleTemplate template =
+                    engine.getTemplate("templates/report.twig");
+            template.evaluate(writer, context);
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Cannot produce html report!", ex);
+        } catch (PebbleException ex) {
+            LOGGER.warn("Cannot produce html report!", ex);
+        } catch (IOException ex) {
+            LOGGER.warn("Cannot produce html report!", ex);
+        } finally {
+            writer.close();
+        }
+
+        if (launch_browser) {
+            launchBrowser(filename);
+        }
+    }
+
+    private void launchBrowser(final String filename) {
+        if (Desktop.isDesktopSupported()) {
+            File file = new File(filename);
+            Desktop desktop = Desktop.getDesktop();
+            try {
+                desktop.browse(file.toURI());
+
+            } catch (IOException e) {
+                LOGGER.info("Cannot launch brower");
+            }
+        } else {
+            Runtime runtime = Runtime.getRuntime();
+            try {
+                runtime.exec("xdg-open " + filename);
+
+            } catch (IOException e) {
+                LOGGER.info("Cannot launch brower");
+            }
+        }
+    }
+}
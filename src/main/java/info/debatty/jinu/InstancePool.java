@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.util.HashMap;
+
+/**
+ * Instances of the tests, one per thread and per test. An instance is created
+ * the first time a thread runs a test, then reused for all the runs of that
+ * test by that thread: construction is amortized, and an instance is never
+ * shared by concurrent runs. The pool also hands the fixtures of the case,
+ * and the latency recorders, to the tests that need them.
+ *
+ * @author Thibault Debatty
+ */
+final class InstancePool {
+
+    private final ThreadLocal<HashMap<TestFactory, TestInterface>> instances =
+            new ThreadLocal<HashMap<TestFactory, TestInterface>>() {
+                @Override
+                protected HashMap<TestFactory, TestInterface> initialValue() {
+                    return new HashMap<TestFactory, TestInterface>();
+                }
+            };
+
+    private final ThreadLocal<LatencyHistogram> recorders =
+            new ThreadLocal<LatencyHistogram>() {
+                @Override
+                protected LatencyHistogram initialValue() {
+                    return new LatencyHistogram();
+                }
+            };
+
+    private final FixtureCache fixtures;
+    private final Throughput throughput;
+
+    /**
+     * @param fixtures fixtures of the case (null if there is no fixture
+     * provider)
+     * @param throughput runs the tests in throughput mode (null to run each
+     * test once)
+     */
+    InstancePool(final FixtureCache fixtures, final Throughput throughput) {
+        this.fixtures = fixtures;
+        this.throughput = throughput;
+    }
+
+    /**
+     * Get the instance of this test that belongs to the current thread.
+     * @param factory
+     * @return
+     */
+    TestInterface get(final TestFactory factory) {
+        HashMap<TestFactory, TestInterface> map = instances.get();
+        TestInterface test = map.get(factory);
+        if (test == null) {
+            test = factory.newInstance();
+            map.put(factory, test);
+        }
+        return test;
+    }
+
+    /**
+     * Run a test once. If the test is a {@link FixtureTest}, it first gets
+     * the fixture for this param value. If the test is a {@link PointTest},
+     * it gets the point of the key. If the test is a {@link LatencyTest},
+     * it gets an empty recorder, and the recorded latencies are attached to
+     * the probe. If the test is a {@link LifecycleTest}, setup and teardown
+     * are called around the run.
+     * Only the run itself is measured (in throughput mode, the run is a
+     * window during which the test is called repeatedly).
+     * @param test
+     * @param key test and param value (or point)
+     * @param probe measures the run
+     * @return the values returned by the test
+     * @throws Exception if the fixture, setup, run or teardown fails, or if
+     * the test returns null
+     */
+    double[] run(
+            final TestInterface test,
+            final FactoryAndValue key,
+            final Probe probe) throws Exception {
+        return run(test, key, probe, null);
+    }
+
+    /**
+     * Run a test once, and call on_start once the fixture and setup are
+     * ready, right before the measured run.
+     * @param test
+     * @param key test and param value (or point)
+     * @param probe measures the run
+     * @param on_start called before the measured run (may be null)
+     * @return the values returned by the test
+     * @throws Exception if the fixture, setup, run or teardown fails, or if
+     * the test returns null
+     */
+    @SuppressWarnings("unchecked")
+    double[] run(
+            final TestInterface test,
+            final FactoryAndValue key,
+            final Probe probe,
+            final Runnable on_start) throws Exception {
+
+        double param = key.getValue();
+        if (test instanceof PointTest) {
+            ((PointTest) test).setPoint(key.getPoint());
+        }
+
+        if (test instanceof FixtureTest) {
+            if (fixtures == null) {
+                throw new IllegalStateException(
+                        test.getClass().getName()
+                        + " requires a fixture provider");
+            }
+            ((FixtureTest<Object>) test).setFixture(fixtures.get(key));
+        }
+
+        // the recorder of the thread is reused, and copied after the run
+        LatencyHistogram recorder = null;
+        if (test instanceof LatencyTest) {
+            recorder = recorders.get();
+            recorder.reset();
+            ((LatencyTest) test).setRecorder(recorder);
+        }
+
+        double[] values;
+        if (test instanceof LifecycleTest) {
+            LifecycleTest lifecycle = (LifecycleTest) test;
+            lifecycle.setup(param);
+            try {
+                values = measure(test, key, probe, on_start);
+            } finally {
+                lifecycle.teardown();
+            }
+        } else {
+            values = measure(test, key, probe, on_start);
+        }
+
+        if (values == null) {
+            throw new IllegalStateException(
+                    test.getClass().getName() + " returned null");
+        }
+
+        if (recorder != null) {
+            probe.setLatencies(recorder.copy());
+        }
+        return values;
+    }
+
+    private double[] measure(
+            final TestInterface test,
+            final FactoryAndValue key,
+            final Probe probe,
+            final Runnable on_start) throws Exception {
+
+        if (on_start != null) {
+            on_start.run();
+        }
+
+        if (throughput != null) {
+            return throughput.run(test, key, probe);
+        }
+
+        probe.start();
+        double[] values = test.run(key.getValue());
+        probe.stop();
+        return values;
+    }
+}
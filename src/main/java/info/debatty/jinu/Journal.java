@@ -0,0 +1,343 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journal of the completed runs of a case, used to resume an interrupted
+ * case, and to merge the shards of a case.
+ *
+ * The file starts with a header: magic number (int), version (int), name of
+ * the case (UTF), number of tests (int) followed by their class names (UTF),
+ * number of param values (int) followed by the values (double). Each
+ * completed run is then appended as: index of the test (int), index of the
+ * param value (int), iteration (int), number of values (int), values
+ * (double), wall clock time (ns), cpu time (ns), user time (ns), allocated
+ * bytes, gc count, gc time (ms) and number of operations (long).
+ *
+ * Records are buffered and flushed (but not synced) after each run, so a
+ * crash of the JVM loses nothing, and a truncated last record (after a
+ * reboot) is simply discarded when the journal is read.
+ *
+ * @author Thibault Debatty
+ */
+final class Journal implements ResultSink {
+
+    /**
+     * Extension of journal files.
+     */
+    static final String EXTENSION = ".journal";
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(Journal.class);
+
+    private static final int MAGIC = 0x4a4e4c31;
+    private static final int VERSION = 1;
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final int RECORD_METRICS_BYTES = 56;
+    private static final int DOUBLE_BYTES = 8;
+
+    private final File file;
+    private final List<TestFactory> tests;
+    private final double[] param_values;
+    private final HashSet<Long> done = new HashSet<Long>();
+    private int[] test_map;
+    private int[] param_map;
+    private long valid_length = 0;
+    private DataOutputStream out;
+
+    /**
+     *
+     * @param file
+     * @param tests
+     * @param param_values
+     */
+    Journal(
+            final File file,
+            final List<TestFactory> tests,
+            final double[] param_values) {
+        this.file = file;
+        this.tests = tests;
+        this.param_values = param_values;
+    }
+
+    /**
+     * Read the runs that were already completed. A truncated last record is
+     * ignored.
+     * @return
+     * @throws IOException if the journal cannot be read, or was written by
+     * another case
+     */
+    List<TestResult> read() throws IOException {
+        return read(true);
+    }
+
+    /**
+     * Read the runs of the tests and param values that also belong to this
+     * case, for example to compare with a baseline that was recorded by an
+     * older version of the case. Other runs are ignored.
+     * @return
+     * @throws IOException if the journal cannot be read
+     */
+    List<TestResult> readMatching() throws IOException {
+        return read(false);
+    }
+
+    private List<TestResult> read(final boolean strict) throws IOException {
+        LinkedList<TestResult> results = new LinkedList<TestResult>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+
+        try {
+            String case_name = readHeader(in, strict);
+            if (strict) {
+                DataOutputStream header =
+                        new DataOutputStream(new ByteArrayOutputStream());
+                writeHeader(header, case_name);
+                valid_length = header.size();
+            }
+
+            TestInterface[] instances = new TestInterface[tests.size()];
+            while (true) {
+                int test_index = in.readInt();
+                int param_index = in.readInt();
+                int iteration = in.readInt();
+                double[] values = new double[in.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = in.readDouble();
+                }
+                Probe probe = Probe.read(in);
+
+                if (test_index < 0 || test_index >= test_map.length
+                        || param_index < 0
+                        || param_index >= param_map.length) {
+                    throw new IOException("Corrupted journal " + file);
+                }
+                valid_length += RECORD_HEADER_BYTES + RECORD_METRICS_BYTES
+                        + DOUBLE_BYTES * values.length;
+
+                test_index = test_map[test_index];
+                param_index = param_map[param_index];
+                if (test_index < 0 || param_index < 0) {
+                    continue;
+                }
+
+                TestFactory factory = tests.get(test_index);
+                if (instances[test_index] == null) {
+                    instances[test_index] = factory.newInstance();
+                }
+                results.add(new TestResult(
+                        values,
+                        probe,
+                        factory,
+                        instances[test_index],
+                        param_values[param_index],
+                        iteration));
+                done.add(key(iteration, test_index, param_index));
+            }
+        } catch (EOFException ex) {
+            // end of the journal, or truncated record
+            LOGGER.debug("Read {} runs from {}", results.size(), file);
+        } finally {
+            in.close();
+        }
+
+        return results;
+    }
+
+    /**
+     *
+     * @param iteration
+     * @param test_index
+     * @param param_index
+     * @return true if this run is already in the journal
+     */
+    synchronized boolean isDone(
+            final int iteration, final int test_index, final int param_index) {
+        return done.contains(key(iteration, test_index, param_index));
+    }
+
+    /**
+     *
+     * @param result
+     * @return true if the run that produced this result is already in the
+     * journal
+     */
+    boolean isDone(final TestResult result) {
+        return isDone(
+                result.getIteration(),
+                tests.indexOf(result.getFactory()),
+                indexOf(result.getParamValue()));
+    }
+
+    /**
+     * Open the journal for writing. If the journal was read, a truncated
+     * last record is removed and new records are appended. Otherwise a new
+     * journal is created.
+     * @param report
+     * @throws IOException if the journal cannot be opened
+     */
+    public void open(final CaseResult report) throws IOException {
+        if (valid_length > 0) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid_length);
+            } finally {
+                raf.close();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file, true)));
+            return;
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        writeHeader(out, report.getCaseName());
+        out.flush();
+    }
+
+    /**
+     * Append a completed run to the journal.
+     * @param result
+     * @throws IOException if the result cannot be written
+     */
+    public synchronized void write(final TestResult result)
+            throws IOException {
+        int test_index = tests.indexOf(result.getFactory());
+        int param_index = indexOf(result.getParamValue());
+        out.writeInt(test_index);
+        out.writeInt(param_index);
+        out.writeInt(result.getIteration());
+        out.writeInt(result.getValues().length);
+        for (double value : result.getValues()) {
+            out.writeDouble(value);
+        }
+        out.writeLong(result.getWallTimeNanos());
+        out.writeLong(result.getCpuTimeNanos());
+        out.writeLong(result.getUserTimeNanos());
+        out.writeLong(result.getAllocated());
+        out.writeLong(result.getGcCount());
+        out.writeLong(result.getGcTime());
+        out.writeLong(result.getOperations());
+        out.flush();
+        done.add(key(result.getIteration(), test_index, param_index));
+    }
+
+    /**
+     * Close the journal.
+     * @param report
+     * @throws IOException if the journal cannot be closed
+     */
+    public void close(final CaseResult report) throws IOException {
+        out.close();
+    }
+
+    private void writeHeader(
+            final DataOutputStream out, final String case_name)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(case_name);
+        out.writeInt(tests.size());
+        for (TestFactory factory : tests) {
+            out.writeUTF(factory.newInstance().getClass().getName());
+        }
+        out.writeInt(param_values.length);
+        for (double param_value : param_values) {
+            out.writeDouble(param_value);
+        }
+    }
+
+    /**
+     * Read the header, and map the tests and param values of the journal to
+     * the ones of this case (-1 if they do not belong to this case).
+     * @param strict if true, the tests and param values must be the same
+     * @return the name of the case
+     */
+    private String readHeader(final DataInputStream in, final boolean strict)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException(file + " is not a journal");
+        }
+        String case_name = in.readUTF();
+
+        ArrayList<String> names = new ArrayList<String>();
+        for (TestFactory factory : tests) {
+            names.add(factory.newInstance().getClass().getName());
+        }
+
+        test_map = new int[in.readInt()];
+        boolean match = test_map.length == tests.size();
+        for (int i = 0; i < test_map.length; i++) {
+            test_map[i] = names.indexOf(in.readUTF());
+            match = match && test_map[i] == i;
+        }
+
+        param_map = new int[in.readInt()];
+        match = match && param_map.length == param_values.length;
+        for (int i = 0; i < param_map.length; i++) {
+            param_map[i] = indexOf(in.readDouble());
+            match = match && param_map[i] == i;
+        }
+
+        if (strict && !match) {
+            throw new IOException(
+                    "Tests or param values do not match journal " + file);
+        }
+        return case_name;
+    }
+
+    private int indexOf(final double param_value) {
+        for (int i = 0; i < param_values.length; i++) {
+            if (param_values[i] == param_value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long key(
+            final int iteration, final int test_index, final int param_index) {
+        return ((long) iteration * tests.size() + test_index)
+                * param_values.length + param_index;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Histogram of latencies (in ns), with a high dynamic range: values from 1ns
+ * to hundreds of years are recorded with a relative error below 1/64 (about
+ * 2 significant digits).
+ *
+ * Values smaller than 128 have their own bucket. Above, each power of 2 is
+ * split in 64 buckets of equal width (log-linear buckets). Recording a value
+ * takes constant time, and does not allocate memory, so it can be done
+ * inside the timed region of a test.
+ *
+ * @author Thibault Debatty
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int HALF = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * HALF;
+    private static final int MAX_SHIFT = Long.SIZE - 2 - SUB_BITS;
+    private static final int BUCKETS = LINEAR + MAX_SHIFT * HALF;
+    private static final double PERCENT = 100;
+
+    private long[] counts;
+    private int length = 0;
+    private long count = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private double sum = 0;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new long[BUCKETS];
+    }
+
+    private LatencyHistogram(final int length) {
+        counts = new long[length];
+    }
+
+    /**
+     * Record a latency.
+     * @param latency (ns), negative values are recorded as 0
+     */
+    public void record(final long latency) {
+        long value = Math.max(0, latency);
+        int index = index(value);
+        if (index >= counts.length) {
+            grow();
+        }
+        counts[index]++;
+        if (index >= length) {
+            length = index + 1;
+        }
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Record the time elapsed since start.
+     * @param start value of System.nanoTime() when the operation started
+     */
+    public void recordSince(final long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * Add all the values recorded by another histogram.
+     * @param other
+     */
+    public void add(final LatencyHistogram other) {
+        if (other.length > counts.length) {
+            grow();
+        }
+        for (int i = 0; i < other.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        length = Math.max(length, other.length);
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Copies only hold the used buckets: allocate all buckets before
+     * recording more values.
+     */
+    private void grow() {
+        long[] grown = new long[BUCKETS];
+        System.arraycopy(counts, 0, grown, 0, length);
+        counts = grown;
+    }
+
+    /**
+     * Remove all values.
+     */
+    void reset() {
+        for (int i = 0; i < length; i++) {
+            counts[i] = 0;
+        }
+        length = 0;
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Copy of this histogram, that only holds the used buckets.
+     * @return
+     */
+    LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(length);
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     *
+     * @return (ns), 0 if the histogram is empty
+     */
+    public long getMin() {
+        if (count == 0) {
+            return 0;
+        }
+        return min;
+    }
+
+    /**
+     *
+     * @return (ns)
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     *
+     * @return (ns), NaN if the histogram is empty
+     */
+    public double getMean() {
+        return sum / count;
+    }
+
+    /**
+     * Get the value below which this percentage of values fall. The value is
+     * the upper bound of the bucket, hence at most 1/64 larger than the
+     * exact value.
+     * @param percentile between 0 and 100
+     * @return (ns), 0 if the histogram is empty
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long rank = (long) Math.ceil(percentile / PERCENT * count);
+        rank = Math.max(1, Math.min(count, rank));
+        long seen = 0;
+        for (int i = 0; i < length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highest(i));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *
+     * @return median (ns)
+     */
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     *
+     * @return 90th percentile (ns)
+     */
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+
+    /**
+     *
+     * @return 99th percentile (ns)
+     */
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     *
+     * @return 99.9th percentile (ns)
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Write a histogram (or null) to a stream.
+     * @param out
+     * @param histogram
+     * @throws IOException if the histogram cannot be written
+     */
+    static void write(final DataOutput out, final LatencyHistogram histogram)
+            throws IOException {
+        if (histogram == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(histogram.length);
+        for (int i = 0; i < histogram.length; i++) {
+            out.writeLong(histogram.counts[i]);
+        }
+        out.writeLong(histogram.count);
+        out.writeLong(histogram.min);
+        out.writeLong(histogram.max);
+        out.writeDouble(histogram.sum);
+    }
+
+    /**
+     * Read a histogram (or null) from a stream.
+     * @param in
+     * @return
+     * @throws IOException if the histogram cannot be read
+     */
+    static LatencyHistogram read(final DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > BUCKETS) {
+            throw new IOException("Invalid histogram");
+        }
+        LatencyHistogram histogram = new LatencyHistogram(length);
+        for (int i = 0; i < length; i++) {
+            histogram.counts[i] = in.readLong();
+        }
+        histogram.length = length;
+        histogram.count = in.readLong();
+        histogram.min = in.readLong();
+        histogram.max = in.readLong();
+        histogram.sum = in.readDouble();
+        return histogram;
+    }
+
+    private static int index(final long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        // value >>> shift is in [HALF, LINEAR)
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+                - SUB_BITS;
+        return LINEAR + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    private static long highest(final int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / HALF + 1;
+        long sub = (index - LINEAR) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + getP50() + " p90=" + getP90() + " p99=" + getP99()
+                + " p99.9=" + getP999() + " max=" + max + " (ns)";
+    }
+}
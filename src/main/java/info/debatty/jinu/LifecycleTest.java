@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+/**
+ * A test with a setup and a teardown phase. For each run, the case calls
+ * setup(param), run(param) then teardown(), and only run(param) is timed.
+ *
+ * Instances are reused: each thread of the case keeps its own instance of
+ * each test, so an instance never runs concurrently with itself, but the
+ * same instance runs successively with different param values. Hence setup
+ * must (re)initialize all the state that run depends on.
+ *
+ * @author Thibault Debatty
+ */
+public interface LifecycleTest extends TestInterface {
+
+    /**
+     * Prepare a run with this param value (not timed).
+     * @param param
+     * @throws Exception if the setup fails (the run is recorded as a failure)
+     */
+    void setup(double param) throws Exception;
+
+    /**
+     * Release the resources allocated by setup (not timed). Also called if
+     * run failed.
+     * @throws Exception if the teardown fails
+     */
+    void teardown() throws Exception;
+}
@@ -30,7 +30,8 @@ package info.debatty.jinu;
 public interface Listener {
 
     /**
-     * Will be triggered at the end of each iteration.
+     * Will be triggered at the end of each iteration, once all the tests of
+     * this iteration are finished. Iterations are notified in order.
      * @param iteration
      */
     void notify(int iteration);
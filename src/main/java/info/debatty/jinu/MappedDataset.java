@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * A (large) input file, memory mapped once per JVM and shared read-only by
+ * all tests. Tests get zero-copy views of the file instead of reading it with
+ * their own streams, so all runs read the same pages of the page cache.
+ *
+ * Files larger than 2GB are mapped in several chunks. Consecutive chunks
+ * overlap, so that any view of at most {@link #MAX_VIEW_BYTES} bytes lies in
+ * a single chunk, wherever it starts.
+ *
+ * Datasets registered with {@link Case#addDataset(String, boolean)} are
+ * mapped (and optionally loaded in memory) before the tests are run, in the
+ * main JVM as well as in the forked and worker JVMs. Tests then use
+ * {@link #get(String)} to access them.
+ *
+ * @author Thibault Debatty
+ */
+public final class MappedDataset {
+
+    /**
+     * Bytes between the start of consecutive chunks.
+     */
+    public static final int CHUNK_BYTES = 1 << 30;
+
+    /**
+     * Maximum size of a view.
+     */
+    public static final int MAX_VIEW_BYTES = Integer.MAX_VALUE - CHUNK_BYTES;
+
+    private static final HashMap<String, MappedDataset> DATASETS =
+            new HashMap<String, MappedDataset>();
+
+    private final String path;
+    private final long size;
+    private final MappedByteBuffer[] chunks;
+
+    private MappedDataset(final String path) throws IOException {
+        this.path = path;
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            size = file.length();
+            chunks = new MappedByteBuffer[
+                    (int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i * CHUNK_BYTES;
+                chunks[i] = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        start,
+                        Math.min(size - start, Integer.MAX_VALUE));
+            }
+        } finally {
+            // the mapping remains valid after the file is closed
+            file.close();
+        }
+    }
+
+    /**
+     * Get the dataset for this file, which is mapped the first time it is
+     * requested in this JVM.
+     * @param path
+     * @return
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedDataset get(final String path) throws IOException {
+        String key = new File(path).getCanonicalPath();
+        synchronized (DATASETS) {
+            MappedDataset dataset = DATASETS.get(key);
+            if (dataset == null) {
+                dataset = new MappedDataset(key);
+                DATASETS.put(key, dataset);
+            }
+            return dataset;
+        }
+    }
+
+    /**
+     * Touch all the pages of the file, so they are read from disk now rather
+     * than during the first runs.
+     */
+    public void load() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.load();
+        }
+    }
+
+    /**
+     *
+     * @return true if all the pages of the file are (probably) in memory
+     */
+    public boolean isLoaded() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (!chunk.isLoaded()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @return canonical path of the file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     *
+     * @return size of the file (bytes)
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get a read-only view of a part of the file. The view has its own
+     * position and limit, and is big endian (use order() to change).
+     * @param offset position of the view in the file
+     * @param length (bytes), at most MAX_VIEW_BYTES
+     * @return
+     */
+    public ByteBuffer view(final long offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > size
+                || length > MAX_VIEW_BYTES) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid view " + offset + " + " + length
+                    + " of " + path);
+        }
+
+        ByteBuffer chunk = chunk(offset).duplicate();
+        int position = (int) (offset % CHUNK_BYTES);
+        chunk.position(position);
+        chunk.limit(position + length);
+        return chunk.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the whole file (if it is smaller than
+     * MAX_VIEW_BYTES).
+     * @return
+     */
+    public ByteBuffer view() {
+        if (size > MAX_VIEW_BYTES) {
+            throw new IndexOutOfBoundsException(
+                    path + " is too large for a single view");
+        }
+        return view(0, (int) size);
+    }
+
+    /**
+     * Read a byte (big endian, like the following methods).
+     * @param position in the file
+     * @return
+     */
+    public byte get(final long position) {
+        return chunk(position).get((int) (position % CHUNK_BYTES));
+    }
+
+    /**
+     *
+     * @param position in the file
+     * @return
+     */
+    public int getInt(final long position) {
+        return chunk(position).getInt((int) (position % CHUNK_BYTES));
+    }
+
+    /**
+     *
+     * @param position in the file
+     * @return
+     */
+    public long getLong(final long position) {
+        return chunk(position).getLong((int) (position % CHUNK_BYTES));
+    }
+
+    /**
+     *
+     * @param position in the file
+     * @return
+     */
+    public double getDouble(final long position) {
+        return chunk(position).getDouble((int) (position % CHUNK_BYTES));
+    }
+
+    private MappedByteBuffer chunk(final long position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Position " + position + " out of " + path);
+        }
+        return chunks[(int) (position / CHUNK_BYTES)];
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + size + " bytes)";
+    }
+}
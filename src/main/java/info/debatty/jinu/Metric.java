@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Resources measured for each run of a test (per operation in throughput
+ * mode). For all metrics, lower is better.
+ *
+ * @author Thibault Debatty
+ */
+public enum Metric {
+
+    /**
+     * Wall clock time (ns).
+     */
+    WALL_TIME(ResultStore.WALL_TIME),
+
+    /**
+     * CPU time of the thread running the test (ns).
+     */
+    CPU_TIME(ResultStore.CPU_TIME),
+
+    /**
+     * User time of the thread running the test (ns).
+     */
+    USER_TIME(ResultStore.USER_TIME),
+
+    /**
+     * Bytes allocated by the thread running the test.
+     */
+    ALLOCATED(ResultStore.ALLOCATED),
+
+    /**
+     * Number of garbage collections.
+     */
+    GC_COUNT(ResultStore.GC_COUNT),
+
+    /**
+     * Time spent in garbage collection (ms).
+     */
+    GC_TIME(ResultStore.GC_TIME);
+
+    private final int column;
+
+    Metric(final int column) {
+        this.column = column;
+    }
+
+    /**
+     * Position of this metric in the result store.
+     * @return
+     */
+    int getColumn() {
+        return column;
+    }
+}
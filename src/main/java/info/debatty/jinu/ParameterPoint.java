@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A point of a parameter space: one value for each named axis.
+ *
+ * @author Thibault Debatty
+ */
+public final class ParameterPoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final String[] names;
+    private final double[] values;
+
+    /**
+     *
+     * @param index position of the point in its design
+     * @param names names of the axes
+     * @param values
+     */
+    ParameterPoint(
+            final int index, final String[] names, final double[] values) {
+        this.index = index;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Position of the point in its design. This is also the param value that
+     * is used to identify the point in the results.
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Value of this axis.
+     * @param name
+     * @return
+     */
+    public double get(final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown axis " + name);
+    }
+
+    /**
+     * Value of this axis, as an int.
+     * @param name
+     * @return
+     */
+    public int getInt(final String name) {
+        return (int) Math.round(get(name));
+    }
+
+    /**
+     * Value of this axis, as a long.
+     * @param name
+     * @return
+     */
+    public long getLong(final String name) {
+        return Math.round(get(name));
+    }
+
+    /**
+     * Names of the axes.
+     * @return
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * Values, in the order of the axes.
+     * @return
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(names[i]).append('=').append(values[i]);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * index + Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof ParameterPoint)) {
+            return false;
+        }
+        ParameterPoint other = (ParameterPoint) obj;
+        return index == other.index
+                && Arrays.equals(names, other.names)
+                && Arrays.equals(values, other.values);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A parameter space with named axes, each having a list of levels. A design
+ * (list of points) can be sampled from the space using a full factorial,
+ * fractional factorial or Latin hypercube design, then given to
+ * {@link Case#setParameterPoints(java.util.List)}.
+ *
+ * Designs are deterministic (Latin hypercubes use a seed), so the same
+ * points are obtained when the case is instantiated again in a child JVM.
+ *
+ * @author Thibault Debatty
+ */
+public final class ParameterSpace {
+
+    private final LinkedList<String> names = new LinkedList<String>();
+    private final LinkedList<double[]> levels = new LinkedList<double[]>();
+
+    /**
+     * Add an axis.
+     * @param name
+     * @param axis_levels possible values
+     * @return this space
+     */
+    public ParameterSpace addAxis(
+            final String name, final double... axis_levels) {
+        if (axis_levels.length == 0) {
+            throw new IllegalArgumentException(
+                    "Axis " + name + " has no level");
+        }
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Duplicate axis " + name);
+        }
+        names.add(name);
+        levels.add(axis_levels.clone());
+        return this;
+    }
+
+    /**
+     * Number of axes.
+     * @return
+     */
+    public int getDimensions() {
+        return names.size();
+    }
+
+    /**
+     * Number of points of the full grid.
+     * @return
+     */
+    public long size() {
+        long size = 1;
+        for (double[] axis_levels : levels) {
+            size *= axis_levels.length;
+        }
+        return size;
+    }
+
+    /**
+     * All the combinations of levels (the last axis varies fastest).
+     * @return
+     */
+    public List<ParameterPoint> fullFactorial() {
+        ArrayList<ParameterPoint> points = new ArrayList<ParameterPoint>();
+        int[] position = new int[names.size()];
+        for (int index = 0; index < size(); index++) {
+            double[] values = new double[names.size()];
+            for (int axis = 0; axis < values.length; axis++) {
+                values[axis] = levels.get(axis)[position[axis]];
+            }
+            points.add(newPoint(index, values));
+
+            for (int axis = position.length - 1; axis >= 0; axis--) {
+                position[axis]++;
+                if (position[axis] < levels.get(axis).length) {
+                    break;
+                }
+                position[axis] = 0;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Two-level fractional factorial design 2^(k-p), using the first and
+     * last level of each of the k axes. The first k-p axes form a full
+     * factorial, and each remaining axis is generated by the product of a
+     * subset of these, largest subsets first (to get the highest
+     * resolution).
+     * @param fraction p: the design has 2^(k-p) points instead of 2^k
+     * @return
+     */
+    public List<ParameterPoint> fractionalFactorial(final int fraction) {
+        int k = names.size();
+        int base = k - fraction;
+        if (fraction < 0 || base < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid fraction " + fraction + " for " + k + " axes");
+        }
+
+        List<Integer> generators = getGenerators(base, fraction);
+        ArrayList<ParameterPoint> points = new ArrayList<ParameterPoint>();
+        for (int run = 0; run < 1 << base; run++) {
+            double[] values = new double[k];
+            for (int axis = 0; axis < k; axis++) {
+                boolean high;
+                if (axis < base) {
+                    high = (run & (1 << axis)) != 0;
+                } else {
+                    // product of the signs: high if the number of low
+                    // factors in the generator is even
+                    int generator = generators.get(axis - base);
+                    high = Integer.bitCount(~run & generator) % 2 == 0;
+                }
+
+                double[] axis_levels = levels.get(axis);
+                values[axis] = high
+                        ? axis_levels[axis_levels.length - 1]
+                        : axis_levels[0];
+            }
+            points.add(newPoint(run, values));
+        }
+        return points;
+    }
+
+    /**
+     * Latin hypercube design: each axis is divided in as many strata as
+     * samples, and each stratum is used exactly once. On an axis with less
+     * levels than samples, each level is used (nearly) the same number of
+     * times.
+     * @param samples number of points
+     * @param seed
+     * @return
+     */
+    public List<ParameterPoint> latinHypercube(
+            final int samples, final long seed) {
+
+        Random rand = new Random(seed);
+        double[][] values = new double[samples][names.size()];
+        for (int axis = 0; axis < names.size(); axis++) {
+            ArrayList<Integer> strata = new ArrayList<Integer>(samples);
+            for (int i = 0; i < samples; i++) {
+                strata.add(i);
+            }
+            Collections.shuffle(strata, rand);
+
+            double[] axis_levels = levels.get(axis);
+            for (int i = 0; i < samples; i++) {
+                double position =
+                        (strata.get(i) + rand.nextDouble()) / samples;
+                int level = Math.min(
+                        axis_levels.length - 1,
+                        (int) (position * axis_levels.length));
+                values[i][axis] = axis_levels[level];
+            }
+        }
+
+        ArrayList<ParameterPoint> points = new ArrayList<ParameterPoint>();
+        for (int i = 0; i < samples; i++) {
+            points.add(newPoint(i, values[i]));
+        }
+        return points;
+    }
+
+    private ParameterPoint newPoint(final int index, final double[] values) {
+        return new ParameterPoint(
+                index, names.toArray(new String[names.size()]), values);
+    }
+
+    /**
+     * Subsets (bit masks) of at least 2 base factors, largest first.
+     */
+    private static List<Integer> getGenerators(
+            final int base, final int count) {
+
+        ArrayList<Integer> generators = new ArrayList<Integer>();
+        for (int size = base; size >= 2 && generators.size() < count; size--) {
+            for (int mask = (1 << base) - 1; mask > 0; mask--) {
+                if (Integer.bitCount(mask) == size
+                        && generators.size() < count) {
+                    generators.add(mask);
+                }
+            }
+        }
+
+        if (generators.size() < count) {
+            throw new IllegalArgumentException(
+                    "Fraction too large: not enough generators");
+        }
+        return generators;
+    }
+}
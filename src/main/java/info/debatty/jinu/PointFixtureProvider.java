@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Builds the input of the tests for the points of a parameter space (see
+ * {@link Case#setParameterPoints(java.util.List)}). Each fixture is built
+ * once per point, and cached by point.
+ *
+ * @author Thibault Debatty
+ * @param <T> type of the fixture
+ */
+public abstract class PointFixtureProvider<T> implements FixtureProvider<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Fixtures of a point provider are built from the point.
+     * @param param
+     * @return never
+     * @throws IllegalStateException always, as the case does not run on a
+     * parameter space
+     */
+    public final T build(final double param) {
+        throw new IllegalStateException(
+                getClass().getName() + " requires parameter points");
+    }
+
+    /**
+     * Build the fixture for this point.
+     * @param point
+     * @return
+     * @throws Exception if the fixture cannot be built (the runs that need
+     * it are recorded as failures)
+     */
+    public abstract T build(ParameterPoint point) throws Exception;
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * A test that runs on the points of a parameter space (see
+ * {@link Case#setParameterPoints(java.util.List)}). The case hands the point
+ * to the test before each run; the param value is the index of the point in
+ * the design.
+ *
+ * @author Thibault Debatty
+ */
+public abstract class PointTest implements TestInterface {
+
+    private ParameterPoint point;
+
+    /**
+     * Set by the case before each run.
+     * @param point
+     */
+    final void setPoint(final ParameterPoint point) {
+        this.point = point;
+    }
+
+    /**
+     * Run the test on the point that was handed by the case.
+     * @param param index of the point
+     * @return
+     * @throws Exception if an error happens in the test.
+     */
+    public final double[] run(final double param) throws Exception {
+        if (point == null) {
+            throw new IllegalStateException(
+                    getClass().getName() + " requires parameter points");
+        }
+        return run(point);
+    }
+
+    /**
+     * Run the test.
+     * @param point
+     * @return
+     * @throws Exception if an error happens in the test.
+     */
+    public abstract double[] run(ParameterPoint point) throws Exception;
+}
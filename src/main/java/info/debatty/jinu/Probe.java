@@ -0,0 +1,323 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Measures the resources used by the current thread between start() and
+ * stop(): wall clock time (using System.nanoTime()), cpu and user time
+ * (using ThreadMXBean) and allocated memory (using
+ * com.sun.management.ThreadMXBean, if available). Garbage collections
+ * (count and time) that occurred in the JVM while the thread was measured are
+ * also recorded, using the GarbageCollectorMXBeans. All times are in
+ * nanoseconds, except GC time which is in milliseconds.
+ *
+ * The values are the totals of the measurement. If the probe measured a batch
+ * of operations (in throughput mode), the number of operations is recorded
+ * too, so the values per operation can be computed without rounding.
+ *
+ * @author Thibault Debatty
+ */
+final class Probe {
+
+    private static final ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME_SUPPORTED =
+            enableCpuTime();
+
+    private static final boolean ALLOCATION_SUPPORTED =
+            Allocations.enable();
+
+    private static final List<GarbageCollectorMXBean> COLLECTORS =
+            ManagementFactory.getGarbageCollectorMXBeans();
+
+    private long wall_time;
+    private long cpu_time;
+    private long user_time;
+    private long allocated;
+    private long gc_count;
+    private long gc_time;
+    private long operations = 1;
+    private LatencyHistogram latencies = null;
+
+    /**
+     * Create a probe, ready to start measuring.
+     */
+    Probe() {
+    }
+
+    /**
+     * Create a probe with already measured values.
+     * @param wall_time
+     * @param cpu_time
+     * @param user_time
+     * @param allocated
+     * @param gc_count
+     * @param gc_time
+     * @param operations number of operations that were measured
+     */
+    Probe(
+            final long wall_time,
+            final long cpu_time,
+            final long user_time,
+            final long allocated,
+            final long gc_count,
+            final long gc_time,
+            final long operations) {
+        this.wall_time = wall_time;
+        this.cpu_time = cpu_time;
+        this.user_time = user_time;
+        this.allocated = allocated;
+        this.gc_count = gc_count;
+        this.gc_time = gc_time;
+        this.operations = operations;
+    }
+
+    /**
+     * Read a probe (that was measured in another JVM) from a stream.
+     * @param in
+     * @return
+     * @throws IOException if the probe cannot be read
+     */
+    static Probe read(final DataInput in) throws IOException {
+        Probe probe = new Probe();
+        probe.wall_time = in.readLong();
+        probe.cpu_time = in.readLong();
+        probe.user_time = in.readLong();
+        probe.allocated = in.readLong();
+        probe.gc_count = in.readLong();
+        probe.gc_time = in.readLong();
+        probe.operations = in.readLong();
+        return probe;
+    }
+
+    /**
+     * Write the measured values to a stream.
+     * @param out
+     * @throws IOException if the probe cannot be written
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeLong(wall_time);
+        out.writeLong(cpu_time);
+        out.writeLong(user_time);
+        out.writeLong(allocated);
+        out.writeLong(gc_count);
+        out.writeLong(gc_time);
+        out.writeLong(operations);
+    }
+
+    /**
+     * Start measuring.
+     */
+    void start() {
+        operations = 1;
+        gc_count = gcCount();
+        gc_time = gcTime();
+        if (ALLOCATION_SUPPORTED) {
+            allocated = Allocations.current();
+        }
+        if (CPU_TIME_SUPPORTED) {
+            cpu_time = THREADS.getCurrentThreadCpuTime();
+            user_time = THREADS.getCurrentThreadUserTime();
+        }
+        wall_time = System.nanoTime();
+    }
+
+    /**
+     * Stop measuring.
+     */
+    void stop() {
+        wall_time = System.nanoTime() - wall_time;
+        if (CPU_TIME_SUPPORTED) {
+            cpu_time = THREADS.getCurrentThreadCpuTime() - cpu_time;
+            user_time = THREADS.getCurrentThreadUserTime() - user_time;
+        } else {
+            cpu_time = 0;
+            user_time = 0;
+        }
+        if (ALLOCATION_SUPPORTED) {
+            allocated = Allocations.current() - allocated;
+        } else {
+            allocated = 0;
+        }
+        gc_count = gcCount() - gc_count;
+        gc_time = gcTime() - gc_time;
+    }
+
+    /**
+     * Record that the probe measured a batch of operations.
+     * @param operations
+     * @param wall_time wall clock time of the operations, without the
+     * overhead of the timer (ns)
+     */
+    void setOperations(final long operations, final long wall_time) {
+        this.operations = operations;
+        this.wall_time = wall_time;
+    }
+
+    long getWallTime() {
+        return wall_time;
+    }
+
+    long getCpuTime() {
+        return cpu_time;
+    }
+
+    long getUserTime() {
+        return user_time;
+    }
+
+    /**
+     * Number of operations that were measured (1, except in throughput
+     * mode).
+     * @return
+     */
+    long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Bytes allocated by the thread.
+     * @return
+     */
+    long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * Number of garbage collections during the measurement.
+     * @return
+     */
+    long getGcCount() {
+        return gc_count;
+    }
+
+    /**
+     * Time spent in garbage collection during the measurement (in ms).
+     * @return
+     */
+    long getGcTime() {
+        return gc_time;
+    }
+
+    /**
+     * Latencies recorded by the test during the measurement.
+     * @return null if the test does not record latencies
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    void setLatencies(final LatencyHistogram latencies) {
+        this.latencies = latencies;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static boolean enableCpuTime() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+            return false;
+        }
+
+        try {
+            if (!THREADS.isThreadCpuTimeEnabled()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            return true;
+
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        } catch (SecurityException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Access to com.sun.management.ThreadMXBean is isolated in this class, so
+     * Probe can be loaded on JVMs that do not provide it.
+     */
+    private static final class Allocations {
+
+        private static com.sun.management.ThreadMXBean threads;
+
+        private Allocations() {
+        }
+
+        static boolean enable() {
+            try {
+                Class.forName("com.sun.management.ThreadMXBean");
+            } catch (ClassNotFoundException ex) {
+                return false;
+            }
+
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+                return false;
+            }
+
+            threads = (com.sun.management.ThreadMXBean) THREADS;
+            try {
+                if (!threads.isThreadAllocatedMemorySupported()) {
+                    return false;
+                }
+                if (!threads.isThreadAllocatedMemoryEnabled()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                }
+                return true;
+
+            } catch (UnsupportedOperationException ex) {
+                return false;
+            } catch (SecurityException ex) {
+                return false;
+            }
+        }
+
+        static long current() {
+            return threads.getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+    }
+}
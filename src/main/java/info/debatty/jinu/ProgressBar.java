@@ -38,7 +38,7 @@ public class ProgressBar {
 
     /**
      *
-     * @param max
+     * @param max total number of tasks
      */
     public ProgressBar(final int max) {
         this.max = max;
@@ -53,7 +53,7 @@ public class ProgressBar {
 
     /**
      * Update the internal counter, and display ETR.
-     * @param value
+     * @param value number of finished tasks
      */
     public final void update(final int value) {
 
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.util.List;
+
+/**
+ * Thrown by {@link Case#run()} when a test regressed compared to the
+ * baseline, after the reports are written. If it is not caught, the JVM exits
+ * with a non-zero status, which fails a CI build.
+ *
+ * @author Thibault Debatty
+ */
+public class RegressionException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<BaselineComparison> regressions;
+
+    /**
+     *
+     * @param baseline time tag of the baseline
+     * @param regressions
+     */
+    RegressionException(
+            final String baseline,
+            final List<BaselineComparison> regressions) {
+        super(buildMessage(baseline, regressions));
+        this.regressions = regressions;
+    }
+
+    private static String buildMessage(
+            final String baseline,
+            final List<BaselineComparison> regressions) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(regressions.size())
+                .append(" regressions compared to baseline T")
+                .append(baseline);
+        for (BaselineComparison regression : regressions) {
+            builder.append("\n  ").append(regression);
+        }
+        return builder.toString();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public final List<BaselineComparison> getRegressions() {
+        return regressions;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.IOException;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A wrapper around a test that runs on a worker, to be submitted to the
+ * executor. If the worker is lost, the test is run again on another worker.
+ *
+ * @author Thibault Debatty
+ */
+class RemoteTest extends TimedTask {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(RemoteTest.class);
+
+    private final WorkerPool workers;
+    private final TestInterface test;
+    private final FactoryAndValue key;
+    private final int iteration;
+    private final CaseResult report;
+    private final ResultSink sink;
+    private final Map<FactoryAndValue, Integer> warmups;
+    private volatile RemoteWorker worker;
+
+    RemoteTest(
+            final WorkerPool workers,
+            final TestInterface test,
+            final FactoryAndValue key,
+            final int iteration,
+            final CaseResult report,
+            final ResultSink sink,
+            final Map<FactoryAndValue, Integer> warmups) {
+        this.workers = workers;
+        this.test = test;
+        this.key = key;
+        this.iteration = iteration;
+        this.report = report;
+        this.sink = sink;
+        this.warmups = warmups;
+    }
+
+    void execute() {
+        if (report.isSkipped(key)) {
+            report.addSkipped(key);
+            return;
+        }
+
+        ForkedJvm.Response response = null;
+        while (response == null) {
+            try {
+                worker = workers.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (worker == null) {
+                if (complete()) {
+                    report.addFailure(key, "All workers were lost");
+                }
+                return;
+            }
+
+            try {
+                response = worker.run(key, this);
+                workers.release(worker);
+            } catch (IOException ex) {
+                if (isExpired()) {
+                    // timeout: the connection was closed on purpose
+                    workers.release(worker);
+                    return;
+                }
+
+                LOGGER.warn(
+                        "Lost worker {} ({}), rescheduling",
+                        worker.getAddress(), ex.getMessage());
+                workers.lost(worker);
+            }
+        }
+
+        if (!complete()) {
+            return;
+        }
+
+        if (response.getWarmup() > 0) {
+            synchronized (warmups) {
+                Integer count = warmups.get(key);
+                warmups.put(
+                        key,
+                        response.getWarmup() + (count == null ? 0 : count));
+            }
+        }
+
+        if (!response.isOk()) {
+            report.addFailure(key, response.getError());
+            LOGGER.warn(response.getError());
+            return;
+        }
+
+        try {
+            sink.write(new TestResult(
+                    response.getValues(),
+                    response.getProbe(),
+                    key.getTest(),
+                    test,
+                    key.getValue(),
+                    iteration,
+                    worker.getAddress()));
+        } catch (IOException ex) {
+            LOGGER.warn(ex.getMessage());
+        }
+    }
+
+    void timeout() {
+        report.addTimeout(key);
+        LOGGER.warn(
+                "{} timed out with param {}",
+                test.getClass().getName(), key.getValue());
+        RemoteWorker running = worker;
+        if (running != null) {
+            running.kill();
+        }
+    }
+}
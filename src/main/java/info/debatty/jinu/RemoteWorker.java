@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection to a worker JVM, used in distributed mode. The connection is
+ * opened when the first test is submitted, and opened again after a timeout.
+ *
+ * The worker writes heartbeats while the connection is open. If nothing is
+ * received during READ_TIMEOUT (the worker host crashed, or the network is
+ * down), the connection fails and the worker is considered lost, even if the
+ * test has no timeout.
+ *
+ * @author Thibault Debatty
+ */
+final class RemoteWorker {
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 10 * ForkedJvm.HEARTBEAT_INTERVAL;
+
+    private final String host;
+    private final int port;
+    private final Case testcase;
+    private final HashSet<FactoryAndValue> warm =
+            new HashSet<FactoryAndValue>();
+
+    private volatile Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    /**
+     *
+     * @param address host:port of the worker
+     * @param testcase
+     */
+    RemoteWorker(final String address, final Case testcase) {
+        int separator = address.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid worker address " + address + " (host:port)");
+        }
+        this.host = address.substring(0, separator);
+        this.port = Integer.parseInt(address.substring(separator + 1));
+        this.testcase = testcase;
+    }
+
+    /**
+     * Run a test on the worker (and connect if needed). The timer of the task
+     * is started once the connection is ready.
+     * @param key
+     * @param task
+     * @return
+     * @throws IOException if the communication with the worker fails
+     */
+    synchronized ForkedJvm.Response run(
+            final FactoryAndValue key, final TimedTask task)
+            throws IOException {
+
+        if (socket == null) {
+            connect();
+        }
+
+        task.startTimer(
+                ForkedJvm.getTimeout(testcase, key, warm.contains(key)));
+
+        try {
+            ForkedJvm.Response response = ForkedJvm.request(
+                    out,
+                    in,
+                    testcase.getTests().indexOf(key.getTest()),
+                    key.getValue());
+            warm.add(key);
+            return response;
+
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Close the connection, without waiting for the running test (if any).
+     */
+    void kill() {
+        Socket connection = socket;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException ex) {
+                LoggerFactory.getLogger(RemoteWorker.class)
+                        .debug(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Close the connection (the worker keeps running).
+     */
+    synchronized void close() {
+        kill();
+        socket = null;
+    }
+
+    /**
+     *
+     * @return host:port
+     */
+    String getAddress() {
+        return host + ":" + port;
+    }
+
+    private void connect() throws IOException {
+        warm.clear();
+        Socket connection = new Socket();
+        try {
+            connection.connect(
+                    new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            connection.setTcpNoDelay(true);
+            connection.setKeepAlive(true);
+            connection.setSoTimeout(READ_TIMEOUT);
+            out = new DataOutputStream(
+                    new BufferedOutputStream(connection.getOutputStream()));
+            in = new DataInputStream(
+                    new BufferedInputStream(connection.getInputStream()));
+
+            out.writeUTF(testcase.getClass().getName());
+            ForkedJvm.handshake(testcase, out, in, getAddress());
+        } catch (IOException ex) {
+            connection.close();
+            throw ex;
+        }
+        socket = connection;
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * View of a finished case result, with everything the html report needs:
+ * names of the tests, labels of the param values, rows of the tables,
+ * similarity matrices and JSON datasets of the charts.
+ *
+ * The view is computed once (the comparisons and charts in parallel), so
+ * rendering the template does not call the test factories nor scan the
+ * results again. The lists of the view cannot be modified, but the rows are
+ * not copied: they reference the statistics, histograms and failures of the
+ * report. Hence the view should only be built once the case is finished (as
+ * {@link HtmlSink} does).
+ *
+ * @author Thibault Debatty
+ */
+public final class ReportView {
+
+    /**
+     * Pool shared by the parallel computations of the reports (charts and
+     * similarity matrices). Its threads are daemons, and are stopped when
+     * the pool is idle.
+     */
+    static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final List<String> test_names;
+    private final List<Integer> eliminations;
+    private final List<String> param_labels;
+    private final List<Row<TestResult>> results;
+    private final List<Row<TestInterval>> intervals;
+    private final List<Row<LatencyHistogram>> latencies;
+    private final List<Row<TestFailures>> failures;
+    private final List<Row<BaselineComparison>> comparisons;
+    private final List<Row<String>> sources;
+    private final List<Similarity> similarities;
+    private final List<String> json_datasets;
+    private final String json_time_dataset;
+    private final String json_allocated_dataset;
+    private final String json_throughput_dataset;
+    private final String json_latency_dataset;
+    private final String json_point_labels;
+    private final int values_count;
+    private final int gc_dominated_count;
+
+    /**
+     * Build the view of this report.
+     * @param report
+     * @throws InterruptedException if the computation is interrupted
+     */
+    ReportView(final CaseResult report) throws InterruptedException {
+        List<TestFactory> tests = report.getTests();
+        double[] param_values = report.getParamValues();
+
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<Integer> eliminated_at = new ArrayList<Integer>();
+        ArrayList<Row<String>> test_sources = new ArrayList<Row<String>>();
+        for (TestFactory test : tests) {
+            String name = test.newInstance().getClass().getName();
+            names.add(name);
+            eliminated_at.add(report.getEliminatedAt(test));
+            test_sources.add(
+                    new Row<String>(name, "", report.getSource(test)));
+        }
+        test_names = Collections.unmodifiableList(names);
+        eliminations = Collections.unmodifiableList(eliminated_at);
+        sources = Collections.unmodifiableList(test_sources);
+
+        ArrayList<String> labels = new ArrayList<String>();
+        for (double param_value : param_values) {
+            labels.add(report.getParamLabel(param_value));
+        }
+        param_labels = Collections.unmodifiableList(labels);
+
+        values_count = Math.max(0, report.getValuesCount());
+        int gc_dominated = 0;
+        ArrayList<Row<TestInterval>> interval_rows =
+                new ArrayList<Row<TestInterval>>();
+        ArrayList<Row<LatencyHistogram>> latency_rows =
+                new ArrayList<Row<LatencyHistogram>>();
+        for (TestInterval interval : report.getIntervals()) {
+            String name = nameOf(tests, interval.getTest());
+            String label = report.getParamLabel(interval.getParamValue());
+            interval_rows.add(new Row<TestInterval>(name, label, interval));
+            if (interval.getLatencies() != null) {
+                latency_rows.add(new Row<LatencyHistogram>(
+                        name, label, interval.getLatencies()));
+            }
+            gc_dominated += interval.getGcDominated();
+        }
+        intervals = Collections.unmodifiableList(interval_rows);
+        latencies = Collections.unmodifiableList(latency_rows);
+        gc_dominated_count = gc_dominated;
+
+        ArrayList<Row<TestResult>> result_rows =
+                new ArrayList<Row<TestResult>>();
+        for (TestResult result : report.getResults()) {
+            result_rows.add(new Row<TestResult>(
+                    nameOf(tests, result.getFactory()),
+                    report.getParamLabel(result.getParamValue()),
+                    result));
+        }
+        results = Collections.unmodifiableList(result_rows);
+
+        ArrayList<Row<TestFailures>> failure_rows =
+                new ArrayList<Row<TestFailures>>();
+        for (TestFailures test_failures : report.getFailures()) {
+            failure_rows.add(new Row<TestFailures>(
+                    nameOf(tests, test_failures.getTest()),
+                    report.getParamLabel(test_failures.getParamValue()),
+                    test_failures));
+        }
+        failures = Collections.unmodifiableList(failure_rows);
+
+        ArrayList<Row<BaselineComparison>> comparison_rows =
+                new ArrayList<Row<BaselineComparison>>();
+        for (BaselineComparison comparison : report.getComparisons()) {
+            comparison_rows.add(new Row<BaselineComparison>(
+                    nameOf(tests, comparison.getTest()),
+                    report.getParamLabel(comparison.getParamValue()),
+                    comparison));
+        }
+        comparisons = Collections.unmodifiableList(comparison_rows);
+
+        // Pairs of tests are compared in parallel by the similarity engine
+        SimilarityEngine engine = report.getSimilarityEngine();
+        ArrayList<Similarity> similarity_tables = new ArrayList<Similarity>();
+        for (int p = 0; p < param_values.length; p++) {
+            for (int v = 0; v < values_count; v++) {
+                List<List<SampleComparison>> matrix =
+                        new ArrayList<List<SampleComparison>>();
+                for (TestFactory test : tests) {
+                    ArrayList<SampleComparison> row =
+                            new ArrayList<SampleComparison>();
+                    for (TestFactory other_test : tests) {
+                        row.add(engine.get(
+                                test, other_test, v, param_values[p]));
+                    }
+                    matrix.add(Collections.unmodifiableList(row));
+                }
+                similarity_tables.add(new Similarity(
+                        labels.get(p),
+                        v,
+                        Collections.unmodifiableList(matrix)));
+            }
+        }
+        similarities = Collections.unmodifiableList(similarity_tables);
+
+        // Charts are computed in parallel
+        ArrayList<Callable<String>> json_tasks =
+                new ArrayList<Callable<String>>();
+        for (int v = 0; v < values_count; v++) {
+            json_tasks.add(new JsonTask(report, v));
+        }
+        json_tasks.add(new JsonTask(report, JsonTask.TIME));
+        json_tasks.add(new JsonTask(report, JsonTask.ALLOCATED));
+        json_tasks.add(new JsonTask(report, JsonTask.THROUGHPUT));
+        json_tasks.add(new JsonTask(report, JsonTask.LATENCY));
+
+        List<String> json = getAll(POOL.invokeAll(json_tasks));
+        json_datasets = Collections.unmodifiableList(
+                json.subList(0, values_count));
+        json_time_dataset = json.get(values_count);
+        json_allocated_dataset = json.get(values_count + 1);
+        json_throughput_dataset = json.get(values_count + 2);
+        json_latency_dataset = json.get(values_count + 3);
+        json_point_labels = report.getJsonPointLabels();
+    }
+
+    private static <T> List<T> getAll(final List<Future<T>> futures)
+            throws InterruptedException {
+        ArrayList<T> list = new ArrayList<T>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                list.add(future.get());
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        return list;
+    }
+
+    private String nameOf(
+            final List<TestFactory> tests, final TestFactory test) {
+        int index = tests.indexOf(test);
+        if (index < 0) {
+            return test.newInstance().getClass().getName();
+        }
+        return test_names.get(index);
+    }
+
+    /**
+     * Class names of the tests.
+     * @return
+     */
+    public List<String> getTestNames() {
+        return test_names;
+    }
+
+    /**
+     * In racing mode, the iteration after which each test was eliminated
+     * (-1 if the test was not eliminated).
+     * @return
+     */
+    public List<Integer> getEliminations() {
+        return eliminations;
+    }
+
+    /**
+     * Labels of the param values.
+     * @return
+     */
+    public List<String> getParamLabels() {
+        return param_labels;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public List<Row<TestResult>> getResults() {
+        return results;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public List<Row<TestInterval>> getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * Latency histograms of the tests that record latencies.
+     * @return
+     */
+    public List<Row<LatencyHistogram>> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public List<Row<TestFailures>> getFailures() {
+        return failures;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public List<Row<BaselineComparison>> getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Source code of each test (null if it could not be read).
+     * @return
+     */
+    public List<Row<String>> getSources() {
+        return sources;
+    }
+
+    /**
+     * Similarity matrix of each param value and value returned by the
+     * tests.
+     * @return
+     */
+    public List<Similarity> getSimilarities() {
+        return similarities;
+    }
+
+    /**
+     * JSON datasets of the chart of each value returned by the tests.
+     * @return
+     */
+    public List<String> getJsonDatasets() {
+        return json_datasets;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String getJsonTimeDataset() {
+        return json_time_dataset;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String getJsonAllocatedDataset() {
+        return json_allocated_dataset;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String getJsonThroughputDataset() {
+        return json_throughput_dataset;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String getJsonLatencyDataset() {
+        return json_latency_dataset;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String getJsonPointLabels() {
+        return json_point_labels;
+    }
+
+    /**
+     * Number of values returned by the tests.
+     * @return
+     */
+    public int getValuesCount() {
+        return values_count;
+    }
+
+    /**
+     * Number of runs that spent more than half of their time in garbage
+     * collection.
+     * @return
+     */
+    public int getGcDominatedCount() {
+        return gc_dominated_count;
+    }
+
+    /**
+     * A row of a table: name of the test, label of the param value, and
+     * data.
+     * @param <T> type of data
+     */
+    public static final class Row<T> {
+
+        private final String test;
+        private final String param;
+        private final T data;
+
+        Row(final String test, final String param, final T data) {
+            this.test = test;
+            this.param = param;
+            this.data = data;
+        }
+
+        /**
+         *
+         * @return class name of the test
+         */
+        public String getTest() {
+            return test;
+        }
+
+        /**
+         *
+         * @return label of the param value
+         */
+        public String getParam() {
+            return param;
+        }
+
+        /**
+         *
+         * @return
+         */
+        public T getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Comparison of each pair of tests, for a param value and a value
+     * returned by the tests.
+     */
+    public static final class Similarity {
+
+        private final String param;
+        private final int value;
+        private final List<List<SampleComparison>> matrix;
+
+        Similarity(
+                final String param,
+                final int value,
+                final List<List<SampleComparison>> matrix) {
+            this.param = param;
+            this.value = value;
+            this.matrix = matrix;
+        }
+
+        /**
+         *
+         * @return label of the param value
+         */
+        public String getParam() {
+            return param;
+        }
+
+        /**
+         *
+         * @return index of the value returned by the tests
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Comparison of tests i and j.
+         * @return
+         */
+        public List<List<SampleComparison>> getMatrix() {
+            return matrix;
+        }
+    }
+
+    /**
+     * Compute the JSON datasets of a chart.
+     */
+    private static final class JsonTask implements Callable<String> {
+
+        static final int TIME = -1;
+        static final int ALLOCATED = -2;
+        static final int THROUGHPUT = -3;
+        static final int LATENCY = -4;
+
+        private final CaseResult report;
+        private final int value;
+
+        JsonTask(final CaseResult report, final int value) {
+            this.report = report;
+            this.value = value;
+        }
+
+        public String call() {
+            if (value == TIME) {
+                return report.getJsonTimeDataset();
+            } else if (value == ALLOCATED) {
+                return report.getJsonAllocatedDataset();
+            } else if (value == THROUGHPUT) {
+                return report.getJsonThroughputDataset();
+            } else if (value == LATENCY) {
+                return report.getJsonLatencyDataset();
+            }
+            return report.getJsonDatasets(value);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of a case, as soon as each test is finished.
+ *
+ * write() is never called concurrently, but may be called by different
+ * threads.
+ *
+ * @author Thibault Debatty
+ */
+public interface ResultSink {
+
+    /**
+     * Called before the first test is run.
+     * @param report the report of the case (results are not available yet)
+     * @throws IOException if the sink cannot be opened
+     */
+    void open(CaseResult report) throws IOException;
+
+    /**
+     * Called each time a test is finished.
+     * @param result
+     * @throws IOException if the result cannot be written
+     */
+    void write(TestResult result) throws IOException;
+
+    /**
+     * Called when all tests are finished.
+     * @param report the complete report of the case
+     * @throws IOException if the sink cannot be closed
+     */
+    void close(CaseResult report) throws IOException;
+}
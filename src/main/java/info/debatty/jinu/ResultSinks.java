@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards results to a list of sinks. Calls to write() are serialized per
+ * sink (so different sinks can be written concurrently), and a failing sink
+ * does not prevent the other sinks (nor the tests) from running. Sinks are
+ * not flushed after each result: the journal is the one that survives a
+ * crash.
+ *
+ * @author Thibault Debatty
+ */
+final class ResultSinks implements ResultSink {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ResultSinks.class);
+
+    private final List<ResultSink> sinks = new LinkedList<ResultSink>();
+
+    /**
+     * Add a sink to the pipeline.
+     * @param sink
+     */
+    void add(final ResultSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Add sinks to the pipeline.
+     * @param sinks
+     */
+    void addAll(final List<ResultSink> sinks) {
+        this.sinks.addAll(sinks);
+    }
+
+    public void open(final CaseResult report) throws IOException {
+        for (ResultSink sink : sinks) {
+            sink.open(report);
+        }
+    }
+
+    public void write(final TestResult result) {
+        for (ResultSink sink : sinks) {
+            try {
+                synchronized (sink) {
+                    sink.write(result);
+                }
+            } catch (IOException ex) {
+                LOGGER.warn("Cannot write result to sink", ex);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Cannot write result to sink", ex);
+            }
+        }
+    }
+
+    /**
+     * Close all sinks, even if some of them fail.
+     * @param report
+     * @throws IOException the first error thrown by a sink (the following
+     * errors are added as suppressed)
+     */
+    public void close(final CaseResult report) throws IOException {
+        Exception error = null;
+        for (ResultSink sink : sinks) {
+            try {
+                synchronized (sink) {
+                    sink.close(report);
+                }
+            } catch (IOException ex) {
+                error = addError(error, ex);
+            } catch (RuntimeException ex) {
+                error = addError(error, ex);
+            }
+        }
+
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw (RuntimeException) error;
+        }
+    }
+
+    private static Exception addError(
+            final Exception error, final Exception ex) {
+        if (error == null) {
+            return ex;
+        }
+        error.addSuppressed(ex);
+        return error;
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Columnar storage of the results of a case.
+ *
+ * Results are grouped in cells, one per test and param value. Inside a cell,
+ * each metric (wall clock time, cpu time, user time, allocated bytes, gc count
+ * and gc time, and the number of operations of the run) and each value
+ * returned by the test is stored in its own growable primitive array. This is
+ * much more compact than keeping a TestResult object (and a list node) per
+ * result.
+ *
+ * Appends are synchronized on the cell, hence results of different tests or
+ * param values can be added concurrently.
+ *
+ * The number of values is fixed by the first result. Results with fewer
+ * values are padded with NaN, and results with more values are rejected.
+ *
+ * @author Thibault Debatty
+ */
+public final class ResultStore {
+
+    /**
+     * Wall clock time (ns).
+     */
+    static final int WALL_TIME = 0;
+
+    /**
+     * CPU time (ns).
+     */
+    static final int CPU_TIME = 1;
+
+    /**
+     * User time (ns).
+     */
+    static final int USER_TIME = 2;
+
+    /**
+     * Allocated bytes.
+     */
+    static final int ALLOCATED = 3;
+
+    /**
+     * Number of garbage collections.
+     */
+    static final int GC_COUNT = 4;
+
+    /**
+     * Time spent in garbage collection (ms).
+     */
+    static final int GC_TIME = 5;
+
+    /**
+     * Number of operations of the run (1, except in throughput mode).
+     */
+    static final int OPERATIONS = 6;
+
+    private static final int METRICS = 7;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<TestFactory> tests;
+    private final double[] param_values;
+    private final HashMap<TestFactory, Integer> test_index =
+            new HashMap<TestFactory, Integer>();
+    private final Cell[][] cells;
+    private final List<String> hosts = new ArrayList<String>();
+    private volatile int values_count = -1;
+
+    /**
+     *
+     * @param tests
+     * @param param_values
+     */
+    public ResultStore(
+            final List<TestFactory> tests, final double[] param_values) {
+        this.tests = tests;
+        this.param_values = param_values;
+        this.cells = new Cell[tests.size()][param_values.length];
+
+        for (int t = 0; t < tests.size(); t++) {
+            test_index.put(tests.get(t), t);
+            for (int p = 0; p < param_values.length; p++) {
+                cells[t][p] = new Cell(
+                        new FactoryAndValue(tests.get(t), param_values[p]),
+                        hosts);
+            }
+        }
+    }
+
+    /**
+     * Add a result.
+     * @param factory the factory of the test that produced the result
+     * @param result
+     * @throws IllegalArgumentException if the test or param value is unknown,
+     * or if the result has more values than the first result
+     */
+    public void add(final TestFactory factory, final TestResult result) {
+        Cell cell = getCell(factory, result.getParamValue());
+        if (cell == null) {
+            throw new IllegalArgumentException(
+                    "Unknown test or param value " + result.getParamValue());
+        }
+
+        int count = initValuesCount(result);
+        if (result.getValues().length > count) {
+            throw new IllegalArgumentException(
+                    result.getTest().getClass().getName() + " returned "
+                    + result.getValues().length + " values with param "
+                    + result.getParamValue() + ", but the first result has "
+                    + count + " values");
+        }
+        cell.add(result, count);
+    }
+
+    private synchronized int initValuesCount(final TestResult result) {
+        if (values_count < 0) {
+            values_count = result.getValues().length;
+        }
+        return values_count;
+    }
+
+    /**
+     * Number of values returned by the tests (or -1 if no result was added
+     * yet).
+     * @return
+     */
+    public int getValuesCount() {
+        return values_count;
+    }
+
+    /**
+     * Total number of results.
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Cell[] row : cells) {
+            for (Cell cell : row) {
+                size += cell.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public List<TestFactory> getTests() {
+        return tests;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double[] getParamValues() {
+        return param_values;
+    }
+
+    /**
+     * Get the results of this test and param value.
+     * @param factory
+     * @param param_value
+     * @return null if the test or param value is unknown
+     */
+    Cell getCell(final TestFactory factory, final double param_value) {
+        Integer t = test_index.get(factory);
+        if (t == null) {
+            return null;
+        }
+
+        for (int p = 0; p < param_values.length; p++) {
+            if (Double.doubleToLongBits(param_values[p])
+                    == Double.doubleToLongBits(param_value)) {
+                return cells[t][p];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write all results as CSV lines, using the same layout as
+     * TestResult.getHeader().
+     * @param writer
+     * @throws IOException if the writer fails
+     */
+    void writeCsv(final Writer writer) throws IOException {
+        for (int t = 0; t < tests.size(); t++) {
+            String name = tests.get(t).newInstance().getClass().getName();
+            for (int p = 0; p < param_values.length; p++) {
+                cells[t][p].writeCsv(writer, name, param_values[p]);
+            }
+        }
+    }
+
+    /**
+     * The results of a single test and param value, and their statistics
+     * (which are updated as results are added).
+     */
+    static final class Cell {
+
+        private static final double NANOS_PER_MILLI = 1E6;
+        private static final String SEPARATOR = ";\t";
+
+        private final FactoryAndValue key;
+        private final List<String> hosts;
+        private int size = 0;
+        private long[][] metrics = new long[METRICS][INITIAL_CAPACITY];
+        private double[][] values = new double[0][INITIAL_CAPACITY];
+        // index of the host in the list of the store, only allocated if a
+        // result comes from a worker
+        private int[] host_ids = null;
+        private TestInterval interval = null;
+
+        Cell(final FactoryAndValue key, final List<String> hosts) {
+            this.key = key;
+            this.hosts = hosts;
+        }
+
+        /**
+         * Append a result, padded with NaN if it has less than count values.
+         */
+        synchronized void add(final TestResult result, final int count) {
+            double[] result_values = result.getValues();
+            if (size == 0) {
+                values = new double[count][INITIAL_CAPACITY];
+                interval = new TestInterval(key, count);
+            }
+
+            if (size == metrics[0].length) {
+                int capacity = size + (size >> 1);
+                for (int m = 0; m < METRICS; m++) {
+                    metrics[m] = Arrays.copyOf(metrics[m], capacity);
+                }
+                for (int v = 0; v < values.length; v++) {
+                    values[v] = Arrays.copyOf(values[v], capacity);
+                }
+                if (host_ids != null) {
+                    host_ids = Arrays.copyOf(host_ids, capacity);
+                }
+            }
+
+            if (result.getHost() != null && host_ids == null) {
+                host_ids = new int[metrics[0].length];
+                Arrays.fill(host_ids, -1);
+            }
+            if (host_ids != null) {
+                host_ids[size] = getHostId(result.getHost());
+            }
+
+            metrics[WALL_TIME][size] = result.getWallTimeNanos();
+            metrics[CPU_TIME][size] = result.getCpuTimeNanos();
+            metrics[USER_TIME][size] = result.getUserTimeNanos();
+            metrics[ALLOCATED][size] = result.getAllocated();
+            metrics[GC_COUNT][size] = result.getGcCount();
+            metrics[GC_TIME][size] = result.getGcTime();
+            metrics[OPERATIONS][size] = result.getOperations();
+            for (int v = 0; v < values.length; v++) {
+                if (v < result_values.length) {
+                    values[v][size] = result_values[v];
+                } else {
+                    values[v][size] = Double.NaN;
+                }
+            }
+            size++;
+            interval.add(result);
+        }
+
+        private int getHostId(final String host) {
+            if (host == null) {
+                return -1;
+            }
+
+            synchronized (hosts) {
+                int id = hosts.indexOf(host);
+                if (id < 0) {
+                    id = hosts.size();
+                    hosts.add(host);
+                }
+                return id;
+            }
+        }
+
+        /**
+         * Worker that produced this result.
+         * @param row
+         * @return null if the test ran locally
+         */
+        synchronized String getHost(final int row) {
+            if (host_ids == null || host_ids[row] < 0) {
+                return null;
+            }
+
+            synchronized (hosts) {
+                return hosts.get(host_ids[row]);
+            }
+        }
+
+        /**
+         * Statistics of the results of this cell.
+         * @return null if the cell is empty
+         */
+        synchronized TestInterval getInterval() {
+            return interval;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int getValuesCount() {
+            return values.length;
+        }
+
+        synchronized long getMetric(final int metric, final int row) {
+            return metrics[metric][row];
+        }
+
+        /**
+         * Copy of all the measures of this metric, per operation.
+         * @param metric
+         * @return
+         */
+        synchronized double[] getMetrics(final int metric) {
+            double[] result = new double[size];
+            for (int row = 0; row < size; row++) {
+                result[row] = (double) metrics[metric][row]
+                        / metrics[OPERATIONS][row];
+            }
+            return result;
+        }
+
+        synchronized double getValue(final int value, final int row) {
+            return values[value][row];
+        }
+
+        /**
+         * Copy of all the values at this position.
+         * @param value
+         * @return
+         */
+        synchronized double[] getValues(final int value) {
+            return Arrays.copyOf(values[value], size);
+        }
+
+        /**
+         * Copy of the values of a single row.
+         * @param row
+         * @return
+         */
+        synchronized double[] getRow(final int row) {
+            double[] result = new double[values.length];
+            for (int v = 0; v < values.length; v++) {
+                result[v] = values[v][row];
+            }
+            return result;
+        }
+
+        /**
+         * Rebuild the TestResult of a single row.
+         * @param row
+         * @param factory
+         * @param test
+         * @param param_value
+         * @return
+         */
+        synchronized TestResult getResult(
+                final int row,
+                final TestFactory factory,
+                final TestInterface test,
+                final double param_value) {
+            Probe probe = new Probe(
+                    metrics[WALL_TIME][row],
+                    metrics[CPU_TIME][row],
+                    metrics[USER_TIME][row],
+                    metrics[ALLOCATED][row],
+                    metrics[GC_COUNT][row],
+                    metrics[GC_TIME][row],
+                    metrics[OPERATIONS][row]);
+            return new TestResult(
+                    getRow(row),
+                    probe,
+                    factory,
+                    test,
+                    param_value,
+                    -1,
+                    getHost(row));
+        }
+
+        synchronized void writeCsv(
+                final Writer writer,
+                final String name,
+                final double param_value) throws IOException {
+
+            for (int row = 0; row < size; row++) {
+                writer.write(name);
+                writer.write(SEPARATOR);
+                writer.write(Double.toString(param_value));
+                writer.write(SEPARATOR);
+                for (int m = WALL_TIME; m <= USER_TIME; m++) {
+                    writer.write(Double.toString(
+                            metrics[m][row] / NANOS_PER_MILLI));
+                    writer.write(SEPARATOR);
+                }
+                for (int m = ALLOCATED; m <= OPERATIONS; m++) {
+                    writer.write(Long.toString(metrics[m][row]));
+                    writer.write(SEPARATOR);
+                }
+                for (int v = 0; v < values.length; v++) {
+                    writer.write(Double.toString(values[v][row]));
+                    writer.write(SEPARATOR);
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * A wrapper around the task, to be submitted to the executor.
+ * @author tibo
+ */
+class RunnableTest extends TimedTask {
+
+    private final InstancePool instances;
+    private final FactoryAndValue key;
+    private final int iteration;
+    private final CaseResult report;
+    private final ResultSink sink;
+    private final long timeout;
+    private final boolean collect_garbage;
+
+    RunnableTest(
+            final InstancePool instances,
+            final FactoryAndValue key,
+            final int iteration,
+            final CaseResult report,
+            final ResultSink sink,
+            final long timeout,
+            final boolean collect_garbage) {
+        this.instances = instances;
+        this.key = key;
+        this.iteration = iteration;
+        this.report = report;
+        this.sink = sink;
+        this.timeout = timeout;
+        this.collect_garbage = collect_garbage;
+    }
+
+    void execute() {
+        if (report.isSkipped(key)) {
+            report.addSkipped(key);
+            return;
+        }
+
+        try {
+            TestInterface test = instances.get(key.getTest());
+            Probe probe = new Probe();
+            // the fixture and setup do not count against the timeout
+            double[] values = instances.run(test, key, probe, new Runnable() {
+
+                public void run() {
+                    startTimer(timeout);
+                }
+            });
+            if (!complete()) {
+                return;
+            }
+
+            sink.write(new TestResult(
+                    values,
+                    probe,
+                    key.getTest(),
+                    test,
+                    key.getValue(),
+                    iteration));
+
+            if (collect_garbage) {
+                Case.collectGarbage();
+            }
+        } catch (Exception ex) {
+            if (complete()) {
+                report.addFailure(key, ex.getMessage());
+                LoggerFactory.getLogger(RunnableTest.class)
+                        .warn(ex.getMessage());
+            }
+        }
+    }
+
+    void timeout() {
+        report.addTimeout(key);
+        LoggerFactory.getLogger(RunnableTest.class).warn(
+                "{} timed out with param {}",
+                report.getTestName(key.getTest()), key.getValue());
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
+import org.apache.commons.math3.stat.inference.TTest;
+
+/**
+ * Comparison of two samples (which may have different sizes): two-sided
+ * p-values of the Welch t-test and of the Mann-Whitney U test, and a
+ * bootstrap confidence interval of the difference of the medians (other
+ * sample minus sample).
+ *
+ * Runtimes are usually skewed, so the Mann-Whitney test and the difference
+ * of medians are more robust than the t-test. The bootstrap interval is
+ * computed (and cached) the first time it is requested, with a seeded
+ * random generator, so it is reproducible. The reverse comparison (samples
+ * swapped) is built once, and shares the statistics and the interval.
+ *
+ * @author Thibault Debatty
+ */
+public final class SampleComparison {
+
+    /**
+     * Number of bootstrap resamples.
+     */
+    static final int BOOTSTRAP_RESAMPLES = 1000;
+
+    /**
+     * Confidence level of the bootstrap interval.
+     */
+    static final double BOOTSTRAP_CONFIDENCE = 0.95;
+
+    private final double[] sample;
+    private final double[] other_sample;
+    private final long seed;
+    private final double t_test;
+    private final double mann_whitney;
+    private final SampleComparison reverse;
+    private final boolean reversed;
+    private double[] interval = null;
+
+    /**
+     *
+     * @param sample
+     * @param other_sample
+     * @param seed seed of the bootstrap
+     */
+    SampleComparison(
+            final double[] sample,
+            final double[] other_sample,
+            final long seed) {
+        this.sample = sample.clone();
+        this.other_sample = other_sample.clone();
+        Arrays.sort(this.sample);
+        Arrays.sort(this.other_sample);
+        this.seed = seed;
+        this.t_test = tTest(this.sample, this.other_sample);
+        this.mann_whitney = mannWhitney(this.sample, this.other_sample);
+        this.reversed = false;
+        this.reverse = new SampleComparison(this);
+    }
+
+    /**
+     * The same comparison, with the samples swapped.
+     */
+    private SampleComparison(final SampleComparison reverse) {
+        this.sample = reverse.other_sample;
+        this.other_sample = reverse.sample;
+        this.seed = reverse.seed;
+        this.t_test = reverse.t_test;
+        this.mann_whitney = reverse.mann_whitney;
+        this.reversed = true;
+        this.reverse = reverse;
+    }
+
+    /**
+     * The same comparison, with the samples swapped (the statistics are not
+     * computed again).
+     * @return
+     */
+    SampleComparison reverse() {
+        return reverse;
+    }
+
+    private static double tTest(
+            final double[] sample, final double[] other_sample) {
+        if (sample.length < 2 || other_sample.length < 2) {
+            return Double.NaN;
+        }
+
+        try {
+            return new TTest().tTest(sample, other_sample);
+        } catch (MathIllegalArgumentException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static double mannWhitney(
+            final double[] sample, final double[] other_sample) {
+        if (sample.length == 0 || other_sample.length == 0) {
+            return Double.NaN;
+        }
+
+        try {
+            return new MannWhitneyUTest().mannWhitneyUTest(
+                    sample, other_sample);
+        } catch (MathIllegalArgumentException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int getSize() {
+        return sample.length;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public int getOtherSize() {
+        return other_sample.length;
+    }
+
+    /**
+     * Two-sided p-value of the Welch t-test.
+     * @return NaN if a sample has less than 2 values, or no variance
+     */
+    public double getTTestPValue() {
+        return t_test;
+    }
+
+    /**
+     * Two-sided p-value of the Mann-Whitney U test (normal approximation).
+     * @return NaN if a sample is empty
+     */
+    public double getMannWhitneyPValue() {
+        return mann_whitney;
+    }
+
+    /**
+     * Median of the other sample minus median of the sample.
+     * @return NaN if a sample is empty
+     */
+    public double getMedianDifference() {
+        return median(other_sample) - median(sample);
+    }
+
+    /**
+     * Lower bound of the bootstrap confidence interval of the difference of
+     * the medians.
+     * @return NaN if a sample is empty
+     */
+    public double getMedianDifferenceLow() {
+        if (reversed) {
+            return -reverse.getMedianDifferenceHigh();
+        }
+        return getInterval()[0];
+    }
+
+    /**
+     * Upper bound of the bootstrap confidence interval of the difference of
+     * the medians.
+     * @return NaN if a sample is empty
+     */
+    public double getMedianDifferenceHigh() {
+        if (reversed) {
+            return -reverse.getMedianDifferenceLow();
+        }
+        return getInterval()[1];
+    }
+
+    /**
+     * Percentile bootstrap: both samples are resampled (with replacement)
+     * independently.
+     */
+    private synchronized double[] getInterval() {
+        if (interval != null) {
+            return interval;
+        }
+
+        if (sample.length == 0 || other_sample.length == 0) {
+            interval = new double[]{Double.NaN, Double.NaN};
+            return interval;
+        }
+
+        Random random = new Random(seed);
+        double[] differences = new double[BOOTSTRAP_RESAMPLES];
+        double[] resample = new double[sample.length];
+        double[] other_resample = new double[other_sample.length];
+        for (int i = 0; i < BOOTSTRAP_RESAMPLES; i++) {
+            differences[i] = median(resample(other_sample, other_resample,
+                    random)) - median(resample(sample, resample, random));
+        }
+        Arrays.sort(differences);
+
+        double alpha = (1 - BOOTSTRAP_CONFIDENCE) / 2;
+        interval = new double[]{
+            differences[(int) Math.floor(alpha * (BOOTSTRAP_RESAMPLES - 1))],
+            differences[(int) Math.ceil(
+                    (1 - alpha) * (BOOTSTRAP_RESAMPLES - 1))]};
+        return interval;
+    }
+
+    /**
+     * Fill resample with random values of sample, and sort it.
+     */
+    private static double[] resample(
+            final double[] sample,
+            final double[] resample,
+            final Random random) {
+        for (int i = 0; i < resample.length; i++) {
+            resample[i] = sample[random.nextInt(sample.length)];
+        }
+        Arrays.sort(resample);
+        return resample;
+    }
+
+    /**
+     * Median of a sorted array.
+     */
+    private static double median(final double[] sorted) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int middle = sorted.length / 2;
+        if (sorted.length % 2 == 1) {
+            return sorted[middle];
+        }
+        return (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks of a case on a work-stealing thread pool, and keeps track of
+ * the unfinished tasks of each iteration.
+ *
+ * Tasks of all iterations can be queued up front: there is no barrier
+ * between iterations, so a slow test does not leave the other threads idle.
+ *
+ * A watchdog thread interrupts the tasks that exceed their timeout. An
+ * expired task is counted as finished immediately, so a test that hangs
+ * (and ignores the interrupt) does not stall the case, but it keeps its
+ * thread busy.
+ *
+ * @author Thibault Debatty
+ */
+final class Scheduler {
+
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService watchdog;
+    private final int[] pending;
+    private final ProgressBar progress;
+    private int finished = 0;
+
+    /**
+     *
+     * @param parallelism number of threads
+     * @param iterations
+     * @param progress progress bar, updated each time a task is finished
+     */
+    Scheduler(
+            final int parallelism,
+            final int iterations,
+            final ProgressBar progress) {
+
+        // asyncMode = true : tasks are processed in FIFO order, so the tasks
+        // of the first iterations are finished first
+        this.pool = new ForkJoinPool(
+                parallelism,
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null,
+                true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "jinu-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.pending = new int[iterations];
+        this.progress = progress;
+    }
+
+    /**
+     * The underlying thread pool.
+     * @return
+     */
+    ExecutorService getPool() {
+        return pool;
+    }
+
+    /**
+     * Queue a task belonging to this iteration.
+     * @param iteration
+     * @param task
+     */
+    void submit(final int iteration, final TimedTask task) {
+        submit(iteration, task, pool);
+    }
+
+    /**
+     * Queue a task belonging to this iteration, on an executor that runs on
+     * top of the pool (like a child JVM).
+     * @param iteration
+     * @param task
+     * @param executor
+     */
+    synchronized void submit(
+            final int iteration,
+            final TimedTask task,
+            final Executor executor) {
+        pending[iteration]++;
+        task.bind(this, iteration);
+        executor.execute(task);
+    }
+
+    /**
+     * Run this action after the given delay, on the watchdog thread.
+     * @param action
+     * @param timeout (ms)
+     * @return
+     */
+    ScheduledFuture<?> schedule(final Runnable action, final long timeout) {
+        return watchdog.schedule(action, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait until all tasks of this iteration are finished.
+     * @param iteration
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void await(final int iteration) throws InterruptedException {
+        while (pending[iteration] > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Stop the threads of the pool.
+     */
+    void shutdown() {
+        watchdog.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Count a task of this iteration as finished.
+     * @param iteration
+     */
+    synchronized void done(final int iteration) {
+        pending[iteration]--;
+        finished++;
+        progress.update(finished);
+        notifyAll();
+    }
+}
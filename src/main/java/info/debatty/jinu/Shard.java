@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.io.Serializable;
+
+/**
+ * A shard of a case: a deterministic subset of the runs (test, param value
+ * and iteration), so that a large case can be split across machines and the
+ * journals merged afterwards with {@link Case#merge(java.lang.String...)}.
+ *
+ * Runs are dealt round-robin: run number r (in the order iteration, test,
+ * param value) belongs to shard (r mod count) + 1. Hence every shard gets
+ * roughly the same number of runs of each iteration.
+ *
+ * @author Thibault Debatty
+ */
+public final class Shard implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final int count;
+
+    /**
+     *
+     * @param index index of this shard, between 1 and count
+     * @param count total number of shards
+     */
+    public Shard(final int index, final int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException(
+                    "Invalid shard " + index + " of " + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parse a shard spec like "3/8" (shard 3 of 8).
+     * @param spec
+     * @return
+     */
+    public static Shard parse(final String spec) {
+        int slash = spec.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid shard spec " + spec + " (expected index/count)");
+        }
+        try {
+            return new Shard(
+                    Integer.parseInt(spec.substring(0, slash).trim()),
+                    Integer.parseInt(spec.substring(slash + 1).trim()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    "Invalid shard spec " + spec + " (expected index/count)");
+        }
+    }
+
+    /**
+     *
+     * @param iteration
+     * @param test_index
+     * @param param_index
+     * @param tests number of tests
+     * @param params number of param values
+     * @return true if this run belongs to this shard
+     */
+    boolean contains(
+            final int iteration,
+            final int test_index,
+            final int param_index,
+            final int tests,
+            final int params) {
+        long run = ((long) iteration * tests + test_index) * params
+                + param_index;
+        return run % count == index - 1;
+    }
+
+    /**
+     *
+     * @return index of this shard, between 1 and count
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     *
+     * @return total number of shards
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
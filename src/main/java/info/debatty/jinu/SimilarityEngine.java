@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the values returned by each pair of tests, for each param value,
+ * once (including the bootstrap interval of the difference of the medians).
+ * The comparisons of each param value and value are computed in
+ * parallel on the pool of the reports.
+ *
+ * @author Thibault Debatty
+ */
+final class SimilarityEngine {
+
+    private static final long SEED_MULTIPLIER = 31;
+
+    private final List<TestFactory> tests;
+    private final double[] param_values;
+    private final int values_count;
+
+    /**
+     * Comparison of tests i and j (i &le; j), for each param value and
+     * value.
+     */
+    private final SampleComparison[][][][] comparisons;
+
+    /**
+     * Compare all pairs of tests.
+     * @param store
+     * @throws InterruptedException if the computation is interrupted
+     */
+    SimilarityEngine(final ResultStore store) throws InterruptedException {
+        this.tests = store.getTests();
+        this.param_values = store.getParamValues();
+        this.values_count = Math.max(0, store.getValuesCount());
+        this.comparisons =
+                new SampleComparison[param_values.length][values_count][][];
+
+        ArrayList<Callable<SampleComparison[][]>> tasks =
+                new ArrayList<Callable<SampleComparison[][]>>();
+        for (int p = 0; p < param_values.length; p++) {
+            for (int v = 0; v < values_count; v++) {
+                tasks.add(new MatrixTask(store, p, v));
+            }
+        }
+
+        List<Future<SampleComparison[][]>> futures =
+                ReportView.POOL.invokeAll(tasks);
+        try {
+            int i = 0;
+            for (int p = 0; p < param_values.length; p++) {
+                for (int v = 0; v < values_count; v++) {
+                    comparisons[p][v] = futures.get(i++).get();
+                }
+            }
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Comparison of the values returned by two tests.
+     * @param test
+     * @param other_test
+     * @param value index of the value returned by the tests
+     * @param param_value
+     * @return null if a test, value or param value is unknown
+     */
+    SampleComparison get(
+            final TestFactory test,
+            final TestFactory other_test,
+            final int value,
+            final double param_value) {
+
+        int i = tests.indexOf(test);
+        int j = tests.indexOf(other_test);
+        int p = indexOf(param_value);
+        if (i < 0 || j < 0 || p < 0 || value < 0 || value >= values_count) {
+            return null;
+        }
+
+        if (i <= j) {
+            return comparisons[p][value][i][j];
+        }
+        return comparisons[p][value][j][i].reverse();
+    }
+
+    private int indexOf(final double param_value) {
+        for (int p = 0; p < param_values.length; p++) {
+            if (Double.doubleToLongBits(param_values[p])
+                    == Double.doubleToLongBits(param_value)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare all pairs of tests for a param value and value. The results
+     * of each test are read once.
+     */
+    private static final class MatrixTask
+            implements Callable<SampleComparison[][]> {
+
+        private final ResultStore store;
+        private final int param_index;
+        private final int value;
+
+        MatrixTask(
+                final ResultStore store,
+                final int param_index,
+                final int value) {
+            this.store = store;
+            this.param_index = param_index;
+            this.value = value;
+        }
+
+        public SampleComparison[][] call() {
+            List<TestFactory> tests = store.getTests();
+            double param_value = store.getParamValues()[param_index];
+            double[][] samples = new double[tests.size()][];
+            for (int t = 0; t < samples.length; t++) {
+                ResultStore.Cell cell =
+                        store.getCell(tests.get(t), param_value);
+                if (cell.size() == 0 || value >= cell.getValuesCount()) {
+                    // failed, timed out or skipped
+                    samples[t] = new double[0];
+                } else {
+                    samples[t] = cell.getValues(value);
+                }
+            }
+
+            SampleComparison[][] matrix =
+                    new SampleComparison[samples.length][samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                for (int j = i; j < samples.length; j++) {
+                    long seed = ((param_index * SEED_MULTIPLIER + value)
+                            * SEED_MULTIPLIER + i) * SEED_MULTIPLIER + j;
+                    matrix[i][j] =
+                            new SampleComparison(samples[i], samples[j], seed);
+                    // bootstrap on the pool, rather than while rendering
+                    matrix[i][j].getMedianDifferenceLow();
+                }
+            }
+            return matrix;
+        }
+    }
+}
@@ -24,6 +24,7 @@
 
 package info.debatty.jinu;
 
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.math3.distribution.TDistribution;
 import org.apache.commons.math3.exception.MathIllegalArgumentException;
 
@@ -34,16 +35,25 @@ import org.apache.commons.math3.exception.MathIllegalArgumentException;
 public class SummaryStatistics
     extends  org.apache.commons.math3.stat.descriptive.SummaryStatistics {
 
+    private static final long serialVersionUID = 1L;
+
     private static final double CONFIDENCE = 0.95;
 
+    /**
+     * Critical values of the T distribution, indexed by degrees of freedom.
+     */
+    private static final ConcurrentHashMap<Long, Double> CRITICAL_VALUES =
+            new ConcurrentHashMap<Long, Double>();
+
+    private long half_width_n = -1;
+    private double half_width;
+
     /**
      * Get the lower bound of confidence interval.
      * @return
      */
     public final double getMinInterval() {
-
-        double ci = calcMeanCI(this, CONFIDENCE);
-        return this.getMean() - ci;
+        return this.getMean() - getHalfWidth();
     }
 
     /**
@@ -51,26 +61,44 @@ public class SummaryStatistics
      * @return
      */
     public final double getMaxInterval() {
+        return this.getMean() + getHalfWidth();
+    }
 
-        double ci = calcMeanCI(this, CONFIDENCE);
-        return this.getMean() + ci;
+    /**
+     * Get the half-width of the confidence interval of the mean.
+     * The value is computed once for each number of samples.
+     * @return
+     */
+    public final synchronized double getHalfWidth() {
+        long n = getN();
+        if (n != half_width_n) {
+            half_width = calcMeanCI(this, CONFIDENCE);
+            half_width_n = n;
+        }
+        return half_width;
     }
 
     private static double calcMeanCI(
             final SummaryStatistics stats, final double level) {
 
-        try {
-            // Create T Distribution with N-1 degrees of freedom
-            TDistribution t_dist = new TDistribution(stats.getN() - 1);
-            // Calculate critical value
-            double crit_val = t_dist.inverseCumulativeProbability(
-                    1.0 - (1 - level) / 2);
-            // Calculate confidence interval
-            return crit_val * stats.getStandardDeviation()
-                    / Math.sqrt(stats.getN());
-        } catch (MathIllegalArgumentException e) {
-            return Double.NaN;
+        long degrees = stats.getN() - 1;
+        Double crit_val = CRITICAL_VALUES.get(degrees);
+        if (crit_val == null) {
+            try {
+                // Create T Distribution with N-1 degrees of freedom
+                TDistribution t_dist = new TDistribution(degrees);
+                // Calculate critical value
+                crit_val = t_dist.inverseCumulativeProbability(
+                        1.0 - (1 - level) / 2);
+            } catch (MathIllegalArgumentException e) {
+                crit_val = Double.NaN;
+            }
+            CRITICAL_VALUES.put(degrees, crit_val);
         }
+
+        // Calculate confidence interval
+        return crit_val * stats.getStandardDeviation()
+                / Math.sqrt(stats.getN());
     }
 
 }
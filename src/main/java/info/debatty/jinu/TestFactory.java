@@ -23,11 +23,15 @@
  */
 package info.debatty.jinu;
 
+import java.io.Serializable;
+
 /**
+ * Factories are serialized with their case, to configure the child and
+ * worker JVMs.
  *
  * @author tibo
  */
-public interface TestFactory {
+public interface TestFactory extends Serializable {
 
     /**
      * Create an new instance of the test.
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+/**
+ * Runs of a test with a param value that did not produce a result: failures
+ * (the test threw an exception), timeouts, and runs that were skipped because
+ * the test already timed out with a smaller param value.
+ *
+ * @author Thibault Debatty
+ */
+public final class TestFailures {
+
+    private final TestFactory test;
+    private final double param_value;
+    private int failures;
+    private int timeouts;
+    private int skipped;
+    private String error = "";
+
+    /**
+     *
+     * @param test_and_value
+     */
+    TestFailures(final FactoryAndValue test_and_value) {
+        this.test = test_and_value.getTest();
+        this.param_value = test_and_value.getValue();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public TestFactory getTest() {
+        return test;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public double getParamValue() {
+        return param_value;
+    }
+
+    /**
+     * Number of runs that threw an exception.
+     * @return
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Number of runs that exceeded the timeout.
+     * @return
+     */
+    public int getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Number of runs skipped after a timeout with a smaller param value.
+     * @return
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Message of the last failure.
+     * @return
+     */
+    public String getError() {
+        return error;
+    }
+
+    void addFailure(final String error) {
+        failures++;
+        this.error = error == null ? "" : error;
+    }
+
+    void addTimeout() {
+        timeouts++;
+    }
+
+    void addSkipped() {
+        skipped++;
+    }
+}
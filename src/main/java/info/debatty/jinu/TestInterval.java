@@ -28,6 +28,9 @@ import java.util.List;
 
 /**
  * All the intervals for a test.
+ *
+ * Statistics are computed online: they are updated each time a result is
+ * added.
  * @author Thibault Debatty
  */
 public final class TestInterval {
@@ -35,7 +38,15 @@ public final class TestInterval {
     private double param_value;
     private final SummaryStatistics[] values;
     private final SummaryStatistics runtime;
+    private final SummaryStatistics cpu_time;
+    private final SummaryStatistics user_time;
+    private final SummaryStatistics allocated;
+    private final SummaryStatistics gc_time;
+    private final SummaryStatistics throughput;
+    private LatencyHistogram latencies = null;
+    private int gc_dominated;
     private TestFactory test;
+    private int warmup;
 
     /**
      *
@@ -43,6 +54,11 @@ public final class TestInterval {
      */
     TestInterval(final int length) {
         runtime = new SummaryStatistics();
+        cpu_time = new SummaryStatistics();
+        user_time = new SummaryStatistics();
+        allocated = new SummaryStatistics();
+        gc_time = new SummaryStatistics();
+        throughput = new SummaryStatistics();
         values = new SummaryStatistics[length];
         for (int i = 0; i < length; i++) {
             values[i] = new SummaryStatistics();
@@ -51,9 +67,13 @@ public final class TestInterval {
 
     /**
      *
+     * @param test_and_value
+     * @param length number of values returned by the test
      */
-    private TestInterval() {
-        this(0);
+    TestInterval(final FactoryAndValue test_and_value, final int length) {
+        this(length);
+        this.test = test_and_value.getTest();
+        this.param_value = test_and_value.getValue();
     }
 
     /**
@@ -80,6 +100,67 @@ public final class TestInterval {
         return runtime;
     }
 
+    /**
+     * CPU time of the thread running the test (in ms).
+     * @return
+     */
+    public SummaryStatistics getCpuTime() {
+        return cpu_time;
+    }
+
+    /**
+     * User time of the thread running the test (in ms).
+     * @return
+     */
+    public SummaryStatistics getUserTime() {
+        return user_time;
+    }
+
+    /**
+     * Bytes allocated by the thread running the test (per operation in
+     * throughput mode).
+     * @return
+     */
+    public SummaryStatistics getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * Time spent in garbage collection while the test was running (in ms,
+     * per operation in throughput mode).
+     * @return
+     */
+    public SummaryStatistics getGcTime() {
+        return gc_time;
+    }
+
+    /**
+     * Number of runs per second (in throughput mode, number of operations
+     * per second), computed from the total runtime and number of operations
+     * of each run.
+     * @return
+     */
+    public SummaryStatistics getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Latencies recorded during all the runs (by a {@link LatencyTest}).
+     * @return null if the test does not record latencies
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Number of runs that spent more than half of their time in garbage
+     * collection.
+     * @return
+     */
+    public int getGcDominated() {
+        return gc_dominated;
+    }
+
     /**
      *
      * @return
@@ -88,6 +169,39 @@ public final class TestInterval {
         return test;
     }
 
+    /**
+     * Number of warmup runs that were discarded for this test and param value.
+     * @return
+     */
+    public int getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Number of measured runs.
+     * @return
+     */
+    public long getIterations() {
+        return runtime.getN();
+    }
+
+    /**
+     * Half-width of the confidence interval of the runtime, divided by the
+     * mean runtime.
+     * @return NaN if there are less than 2 runs
+     */
+    public double getRelativeHalfWidth() {
+        return runtime.getHalfWidth() / runtime.getMean();
+    }
+
+    /**
+     *
+     * @param warmup number of discarded warmup runs
+     */
+    void setWarmup(final int warmup) {
+        this.warmup = warmup;
+    }
+
     /**
      *
      * @param test_and_value
@@ -104,15 +218,44 @@ public final class TestInterval {
         test_interval.test = test_and_value.getTest();
         test_interval.param_value = test_and_value.getValue();
 
-        // Add all values
         for (TestResult result : results) {
-            test_interval.runtime.addValue(result.getRuntime());
+            test_interval.add(result);
+        }
+
+        return test_interval;
+    }
 
-            for (int i = 0; i < values_count; i++) {
-                test_interval.values[i].addValue(result.getValue(i));
+    /**
+     * Add a result to the statistics. If the result has less values than
+     * this interval, the missing values are ignored (and the extra values
+     * are ignored as well).
+     * @param result
+     */
+    void add(final TestResult result) {
+        runtime.addValue(result.getRuntime());
+        cpu_time.addValue(result.getCpuTime());
+        user_time.addValue(result.getUserTime());
+        allocated.addValue(
+                (double) result.getAllocated() / result.getOperations());
+        gc_time.addValue(
+                (double) result.getGcTime() / result.getOperations());
+        if (result.getLatencies() != null) {
+            if (latencies == null) {
+                latencies = new LatencyHistogram();
             }
+            latencies.add(result.getLatencies());
+        }
+        double operations_per_second = result.getThroughput();
+        if (!Double.isNaN(operations_per_second)) {
+            throughput.addValue(operations_per_second);
+        }
+        if (result.isGcDominated()) {
+            gc_dominated++;
         }
 
-        return test_interval;
+        int count = Math.min(values.length, result.getValues().length);
+        for (int i = 0; i < count; i++) {
+            values[i].addValue(result.getValue(i));
+        }
     }
 }
@@ -24,23 +24,44 @@
 
 package info.debatty.jinu;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 /**
+ * Result of a run. In throughput mode, a run is a batch of operations: the
+ * resources (times, allocated bytes and garbage collections) are the totals
+ * of the run, while getRuntime(), getCpuTime() and getUserTime() are per
+ * operation.
  *
  * @author Thibault Debatty
  */
 public final class TestResult {
 
     private static final String SEPARATOR = ";\t";
+    private static final double NANOS_PER_MILLI = 1E6;
+    private static final double NANOS_PER_SECOND = 1E9;
+    private static final double GC_DOMINATED_RATIO = 0.5;
 
     private final double[] values;
-    private final long runtime;
+    private final long wall_time;
+    private final long cpu_time;
+    private final long user_time;
+    private final long allocated;
+    private final long gc_count;
+    private final long gc_time;
+    private final long operations;
+    private final TestFactory factory;
     private final TestInterface test;
     private final double param_value;
+    private final int iteration;
+    private final String host;
+    private final LatencyHistogram latencies;
 
     /**
      *
      * @param values
-     * @param runtime
+     * @param runtime wall clock runtime (in ms)
      * @param test
      * @param param_value
      */
@@ -51,9 +72,98 @@ public final class TestResult {
             final double param_value) {
 
         this.values = values;
-        this.runtime = runtime;
+        this.wall_time = runtime * (long) NANOS_PER_MILLI;
+        this.cpu_time = 0;
+        this.user_time = 0;
+        this.allocated = 0;
+        this.gc_count = 0;
+        this.gc_time = 0;
+        this.operations = 1;
+        this.factory = null;
+        this.test = test;
+        this.param_value = param_value;
+        this.iteration = -1;
+        this.host = null;
+        this.latencies = null;
+    }
+
+    /**
+     *
+     * @param values
+     * @param probe resources used by the test
+     * @param factory
+     * @param test
+     * @param param_value
+     */
+    TestResult(
+            final double[] values,
+            final Probe probe,
+            final TestFactory factory,
+            final TestInterface test,
+            final double param_value) {
+        this(values, probe, factory, test, param_value, -1);
+    }
+
+    /**
+     *
+     * @param values
+     * @param probe resources used by the test
+     * @param factory
+     * @param test
+     * @param param_value
+     * @param iteration iteration that produced this result
+     */
+    TestResult(
+            final double[] values,
+            final Probe probe,
+            final TestFactory factory,
+            final TestInterface test,
+            final double param_value,
+            final int iteration) {
+        this(values, probe, factory, test, param_value, iteration, null);
+    }
+
+    /**
+     *
+     * @param values
+     * @param probe resources used by the test
+     * @param factory
+     * @param test
+     * @param param_value
+     * @param iteration iteration that produced this result
+     * @param host worker that ran the test (null if it ran locally)
+     */
+    TestResult(
+            final double[] values,
+            final Probe probe,
+            final TestFactory factory,
+            final TestInterface test,
+            final double param_value,
+            final int iteration,
+            final String host) {
+
+        this.values = values;
+        this.wall_time = probe.getWallTime();
+        this.cpu_time = probe.getCpuTime();
+        this.user_time = probe.getUserTime();
+        this.allocated = probe.getAllocated();
+        this.gc_count = probe.getGcCount();
+        this.gc_time = probe.getGcTime();
+        this.operations = probe.getOperations();
+        this.factory = factory;
         this.test = test;
         this.param_value = param_value;
+        this.iteration = iteration;
+        this.host = host;
+        this.latencies = probe.getLatencies();
+    }
+
+    /**
+     * The factory that produced the test.
+     * @return
+     */
+    public TestFactory getFactory() {
+        return factory;
     }
 
     /**
@@ -72,6 +182,31 @@ public final class TestResult {
         return param_value;
     }
 
+    /**
+     * The iteration that produced this result, or -1 if unknown.
+     * @return
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * The worker that ran the test, in distributed mode.
+     * @return host:port of the worker, or null if the test ran locally
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Latencies recorded by the test during this run (kept in memory only:
+     * they are not written by the sinks nor the journal).
+     * @return null if the test does not record latencies
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
 
 
     /**
@@ -92,11 +227,106 @@ public final class TestResult {
     }
 
     /**
-     *
+     * Number of operations of the run (1, except in throughput mode).
+     * @return
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Wall clock runtime of an operation (in ms).
      * @return
      */
-    public long getRuntime() {
-        return runtime;
+    public double getRuntime() {
+        return wall_time / NANOS_PER_MILLI / operations;
+    }
+
+    /**
+     * CPU time (user + system) used by the thread running the test, per
+     * operation (in ms).
+     * @return
+     */
+    public double getCpuTime() {
+        return cpu_time / NANOS_PER_MILLI / operations;
+    }
+
+    /**
+     * User time used by the thread running the test, per operation (in ms).
+     * @return
+     */
+    public double getUserTime() {
+        return user_time / NANOS_PER_MILLI / operations;
+    }
+
+    /**
+     * Number of operations per second.
+     * @return NaN if the runtime is 0
+     */
+    public double getThroughput() {
+        if (wall_time <= 0) {
+            return Double.NaN;
+        }
+        return operations * NANOS_PER_SECOND / wall_time;
+    }
+
+    /**
+     * Wall clock runtime of the run (all operations, in ns).
+     * @return
+     */
+    public long getWallTimeNanos() {
+        return wall_time;
+    }
+
+    /**
+     * CPU time used by the thread during the run (all operations, in ns).
+     * @return
+     */
+    public long getCpuTimeNanos() {
+        return cpu_time;
+    }
+
+    /**
+     * User time used by the thread during the run (all operations, in
+     * ns).
+     * @return
+     */
+    public long getUserTimeNanos() {
+        return user_time;
+    }
+
+    /**
+     * Bytes allocated by the thread during the run (all operations).
+     * @return
+     */
+    public long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * Number of garbage collections (in the whole JVM) that overlapped the
+     * run.
+     * @return
+     */
+    public long getGcCount() {
+        return gc_count;
+    }
+
+    /**
+     * Time spent in garbage collection (in the whole JVM) while the test was
+     * running (in ms).
+     * @return
+     */
+    public long getGcTime() {
+        return gc_time;
+    }
+
+    /**
+     * True if more than half of the runtime was spent in garbage collection.
+     * @return
+     */
+    public boolean isGcDominated() {
+        return gc_time > GC_DOMINATED_RATIO * wall_time / NANOS_PER_MILLI;
     }
 
     /**
@@ -104,10 +334,44 @@ public final class TestResult {
      * @return
      */
     public String toCsv() {
-        return test.getClass().getName() + SEPARATOR
-                + param_value + SEPARATOR
-                + runtime + SEPARATOR
-                + arrToCsv(values);
+        StringWriter writer = new StringWriter();
+        try {
+            writeCsv(writer);
+        } catch (IOException ex) {
+            // cannot happen with a StringWriter
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write this result as a CSV line (without line terminator).
+     * @param writer
+     * @throws IOException if the writer fails
+     */
+    void writeCsv(final Writer writer) throws IOException {
+        writer.write(test.getClass().getName());
+        writer.write(SEPARATOR);
+        writer.write(Double.toString(param_value));
+        writer.write(SEPARATOR);
+        writer.write(Double.toString(wall_time / NANOS_PER_MILLI));
+        writer.write(SEPARATOR);
+        writer.write(Double.toString(cpu_time / NANOS_PER_MILLI));
+        writer.write(SEPARATOR);
+        writer.write(Double.toString(user_time / NANOS_PER_MILLI));
+        writer.write(SEPARATOR);
+        writer.write(Long.toString(allocated));
+        writer.write(SEPARATOR);
+        writer.write(Long.toString(gc_count));
+        writer.write(SEPARATOR);
+        writer.write(Long.toString(gc_time));
+        writer.write(SEPARATOR);
+        writer.write(Long.toString(operations));
+        writer.write(SEPARATOR);
+        for (double value : values) {
+            writer.write(Double.toString(value));
+            writer.write(SEPARATOR);
+        }
     }
 
     /**
@@ -115,24 +379,22 @@ public final class TestResult {
      * @return
      */
     public String getHeader() {
-        String r = "## test" + SEPARATOR
-                + "input value" + SEPARATOR
-                + "runtime" + SEPARATOR;
+        StringBuilder builder = new StringBuilder();
+        builder.append("## test").append(SEPARATOR)
+                .append("input value").append(SEPARATOR)
+                .append("runtime (ms)").append(SEPARATOR)
+                .append("cpu time (ms)").append(SEPARATOR)
+                .append("user time (ms)").append(SEPARATOR)
+                .append("allocated (bytes)").append(SEPARATOR)
+                .append("gc count").append(SEPARATOR)
+                .append("gc time (ms)").append(SEPARATOR)
+                .append("operations").append(SEPARATOR);
 
         for (int i = 0; i < values.length; i++) {
-            r += "value" + i + SEPARATOR;
+            builder.append("value").append(i).append(SEPARATOR);
         }
 
-        r += "\n";
-
-        return r;
-    }
-
-    private static String arrToCsv(final double[] arr) {
-        String r = "";
-        for (int i = 0; i < arr.length; i++) {
-            r += arr[i] + SEPARATOR;
-        }
-        return r;
+        builder.append("\n");
+        return builder.toString();
     }
 }
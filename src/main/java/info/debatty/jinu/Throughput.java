@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a test repeatedly during a fixed time window, to measure operations
+ * that are too short to be timed individually.
+ *
+ * The operation is called in batches: the size of a batch is calibrated
+ * (before the first measurement of each test and param value) so that a batch
+ * lasts long compared to the overhead of the timer, and this overhead is
+ * subtracted from the time of each batch. The probe then holds the resources
+ * used by all the operations, and the number of operations.
+ *
+ * @author Thibault Debatty
+ */
+final class Throughput {
+
+    private static final int OVERHEAD_SAMPLES = 10000;
+    private static final int BATCHES_PER_WINDOW = 100;
+    private static final int MIN_BATCH_OVERHEADS = 1000;
+    private static final int MAX_BATCH = 1 << 30;
+
+    /**
+     * Average duration of a call to System.nanoTime() (ns), measured once
+     * per JVM.
+     */
+    private static final long TIMER_OVERHEAD = measureTimerOverhead();
+
+    private final long window;
+    private final ConcurrentHashMap<FactoryAndValue, Integer> batches =
+            new ConcurrentHashMap<FactoryAndValue, Integer>();
+
+    /**
+     *
+     * @param window duration of the measurement (ns)
+     */
+    Throughput(final long window) {
+        this.window = window;
+    }
+
+    /**
+     * Run the test until the window is elapsed. The batch size is calibrated
+     * the first time this test and param value are run.
+     * @param test
+     * @param key test and param value
+     * @param probe measures the operations
+     * @return the values returned by the last operation
+     * @throws Exception if the test fails
+     */
+    double[] run(final TestInterface test, final FactoryAndValue key,
+            final Probe probe) throws Exception {
+
+        double param = key.getValue();
+        Integer batch = batches.get(key);
+        if (batch == null) {
+            batch = calibrate(test, param);
+            batches.put(key, batch);
+        }
+
+        double[] values = null;
+        long elapsed = 0;
+        long operations = 0;
+        probe.start();
+        // the window ends on the clock, even if the operations are so short
+        // that the time of a batch is hidden by the overhead of the timer
+        long begin = System.nanoTime();
+        long now = begin;
+        while (now - begin < window) {
+            long start = now;
+            for (int i = 0; i < batch; i++) {
+                values = test.run(param);
+            }
+            now = System.nanoTime();
+            elapsed += Math.max(0, now - start - TIMER_OVERHEAD);
+            operations += batch;
+        }
+        probe.stop();
+        probe.setOperations(operations, elapsed);
+        return values;
+    }
+
+    /**
+     * Double the batch size until a batch lasts at least 1/100 of the window
+     * (and much longer than the overhead of the timer).
+     */
+    private int calibrate(final TestInterface test, final double param)
+            throws Exception {
+
+        long target = Math.max(
+                window / BATCHES_PER_WINDOW,
+                MIN_BATCH_OVERHEADS * TIMER_OVERHEAD);
+        int batch = 1;
+        while (batch < MAX_BATCH) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                test.run(param);
+            }
+            if (System.nanoTime() - start >= target) {
+                break;
+            }
+            batch *= 2;
+        }
+        return batch;
+    }
+
+    private static long measureTimerOverhead() {
+        long start = System.nanoTime();
+        for (int i = 0; i < OVERHEAD_SAMPLES; i++) {
+            System.nanoTime();
+        }
+        return (System.nanoTime() - start) / OVERHEAD_SAMPLES;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task that can be interrupted if it runs for too long. The task calls
+ * startTimer() when the measured part begins, and must only record its result
+ * if complete() returns true: otherwise the task has expired, and timeout()
+ * was called instead.
+ *
+ * @author Thibault Debatty
+ */
+abstract class TimedTask implements Runnable {
+
+    private static final int RUNNING = 0;
+    private static final int FINISHED = 1;
+    private static final int EXPIRED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private Scheduler scheduler;
+    private int iteration;
+    private Thread thread;
+    private ScheduledFuture<?> alarm;
+
+    /**
+     * Run the task.
+     */
+    abstract void execute();
+
+    /**
+     * Called (on the watchdog thread) when the task has expired.
+     */
+    abstract void timeout();
+
+    public final void run() {
+        synchronized (this) {
+            thread = Thread.currentThread();
+        }
+
+        try {
+            execute();
+        } finally {
+            synchronized (this) {
+                if (alarm != null) {
+                    alarm.cancel(false);
+                }
+                thread = null;
+                // clear the interrupt, if any, before running the next task
+                Thread.interrupted();
+            }
+
+            state.compareAndSet(RUNNING, FINISHED);
+            if (state.get() == FINISHED) {
+                scheduler.done(iteration);
+            }
+        }
+    }
+
+    /**
+     * Start counting from now.
+     * @param timeout (ms), 0 for no timeout
+     */
+    final synchronized void startTimer(final long timeout) {
+        if (alarm != null) {
+            // the task is retried (on another worker)
+            alarm.cancel(false);
+            alarm = null;
+        }
+
+        if (timeout <= 0) {
+            return;
+        }
+
+        alarm = scheduler.schedule(new Runnable() {
+
+            public void run() {
+                expire();
+            }
+        }, timeout);
+    }
+
+    /**
+     *
+     * @return false if the task has expired
+     */
+    final boolean complete() {
+        return state.compareAndSet(RUNNING, FINISHED);
+    }
+
+    /**
+     *
+     * @return true if the task has expired
+     */
+    final boolean isExpired() {
+        return state.get() == EXPIRED;
+    }
+
+    final void bind(final Scheduler scheduler, final int iteration) {
+        this.scheduler = scheduler;
+        this.iteration = iteration;
+    }
+
+    private void expire() {
+        synchronized (this) {
+            if (!state.compareAndSet(RUNNING, EXPIRED)) {
+                return;
+            }
+
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        timeout();
+        scheduler.done(iteration);
+    }
+}
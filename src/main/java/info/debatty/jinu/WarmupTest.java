@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.concurrent.Callable;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repeatedly run a test, to warm up the JVM (class loading, JIT compilation)
+ * before the actual measurements. Runtimes are discarded. The test runs
+ * through the instance pool, like the measured runs: the instance of the
+ * thread that runs the warmup is the one that is warmed up (with its
+ * fixture, setup and teardown).
+ * @author Thibault Debatty
+ */
+class WarmupTest implements Callable<Integer> {
+
+    private final InstancePool instances;
+    private final FactoryAndValue key;
+    private final int iterations;
+    private final int window;
+    private final double max_cv;
+    private final int max_iterations;
+    private Thread thread;
+    private boolean cancelled = false;
+
+    WarmupTest(
+            final InstancePool instances,
+            final FactoryAndValue key,
+            final int iterations,
+            final int window,
+            final double max_cv,
+            final int max_iterations) {
+        this.instances = instances;
+        this.key = key;
+        this.iterations = iterations;
+        this.window = window;
+        this.max_cv = max_cv;
+        this.max_iterations = Math.max(iterations, max_iterations);
+    }
+
+    /**
+     * Run the warmup iterations.
+     * @return the number of warmup runs that were performed
+     */
+    public Integer call() {
+        synchronized (this) {
+            if (cancelled) {
+                return 0;
+            }
+            thread = Thread.currentThread();
+        }
+
+        DescriptiveStatistics runtimes =
+                new DescriptiveStatistics(Math.max(1, window));
+
+        Probe probe = new Probe();
+        int count = 0;
+        try {
+            TestInterface test = instances.get(key.getTest());
+            while (count < iterations
+                    || (window > 0 && count < max_iterations
+                    && !isSteady(runtimes))) {
+                instances.run(test, key, probe);
+                runtimes.addValue(
+                        (double) probe.getWallTime() / probe.getOperations());
+                count++;
+            }
+        } catch (Exception ex) {
+            LoggerFactory.getLogger(WarmupTest.class).warn(ex.getMessage());
+        } finally {
+            synchronized (this) {
+                thread = null;
+                Thread.interrupted();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Interrupt the warmup (if it is still running).
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private boolean isSteady(final DescriptiveStatistics runtimes) {
+        if (runtimes.getN() < window) {
+            return false;
+        }
+
+        double mean = runtimes.getMean();
+        if (mean == 0) {
+            return true;
+        }
+        return runtimes.getStandardDeviation() / mean <= max_cv;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the worker JVMs used in distributed mode.
+ *
+ * The worker listens on a TCP port. Each connection from the coordinator
+ * (see {@link Case#setWorkers(java.lang.String[])}) starts with the class
+ * name of the case (UTF), followed by the same handshake as the child JVMs of
+ * fork mode: the case, serialized by the coordinator with its settings,
+ * tests, fixture provider and parameter points (listeners and sinks are not
+ * sent). If the case is not serializable, the worker falls back to its
+ * default constructor, and the settings applied after construction are lost.
+ * In both cases, the classes of the case and its tests must be on the
+ * classpath of the worker. The worker then runs the requested tests with the
+ * same protocol as the child JVMs. Each connection is served by its own
+ * thread, so a worker can run several tests in parallel if the coordinator
+ * opens several connections.
+ *
+ * While a connection is open, the worker writes heartbeats. When they cannot
+ * be written anymore (the coordinator closed the connection because the test
+ * timed out, or the coordinator is lost), the running test is interrupted.
+ * As long as such an abandoned test is still running, new connections wait,
+ * and are eventually refused, so the abandoned test does not skew the
+ * following measurements.
+ *
+ * @author Thibault Debatty
+ */
+public final class Worker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Worker.class);
+    private static final long ABANDONED_WAIT = 5000;
+    private static final int OPEN = 0;
+    private static final int LOST = 1;
+    private static final int CLOSED = 2;
+
+    private static final Object ABANDONED_LOCK = new Object();
+    private static int abandoned = 0;
+
+    private Worker() {
+    }
+
+    /**
+     * Run a worker.
+     * @param args the port to listen on (0 to choose a free port, which is
+     * printed on stdout)
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(final String[] args) throws IOException {
+        ServerSocket server = new ServerSocket(Integer.parseInt(args[0]));
+        System.out.println(server.getLocalPort());
+        System.out.flush();
+        listen(server);
+    }
+
+    /**
+     * Serve the connections to this server socket, until it is closed.
+     * @param server
+     * @throws IOException if the server socket fails (or is closed)
+     */
+    static void listen(final ServerSocket server) throws IOException {
+        LOGGER.info("Worker listening on port {}", server.getLocalPort());
+
+        while (true) {
+            final Socket socket = server.accept();
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+                    serve(socket);
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static void serve(final Socket socket) {
+        Timer heartbeats = new Timer(true);
+        AtomicInteger state = new AtomicInteger(OPEN);
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+
+            String case_name = in.readUTF();
+            if (!waitForAbandoned()) {
+                LOGGER.warn(
+                        "Refusing {}: a test that timed out is still running",
+                        socket.getRemoteSocketAddress());
+                return;
+            }
+
+            LOGGER.info(
+                    "Running {} for {}",
+                    case_name, socket.getRemoteSocketAddress());
+            heartbeats.schedule(
+                    new Heartbeat(socket, out, Thread.currentThread(), state),
+                    0, ForkedJvm.HEARTBEAT_INTERVAL);
+            Fork.serve(case_name, in, out);
+
+        } catch (Exception ex) {
+            LOGGER.warn("Connection lost: {}", ex.getMessage());
+        } finally {
+            heartbeats.cancel();
+            close(socket);
+            synchronized (ABANDONED_LOCK) {
+                if (state.getAndSet(CLOSED) == LOST) {
+                    abandoned--;
+                    ABANDONED_LOCK.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until the abandoned tests are finished, at most ABANDONED_WAIT ms.
+     * @return false if some abandoned test is still running
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private static boolean waitForAbandoned() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ABANDONED_WAIT;
+        synchronized (ABANDONED_LOCK) {
+            while (abandoned > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                ABANDONED_LOCK.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private static void close(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOGGER.debug(ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes a heartbeat. If the heartbeat cannot be written, the connection
+     * is lost: the thread that serves it (and the test it is running) is
+     * interrupted.
+     */
+    private static final class Heartbeat extends TimerTask {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final Thread thread;
+        private final AtomicInteger state;
+
+        Heartbeat(
+                final Socket socket,
+                final DataOutputStream out,
+                final Thread thread,
+                final AtomicInteger state) {
+            this.socket = socket;
+            this.out = out;
+            this.thread = thread;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            try {
+                synchronized (out) {
+                    out.writeByte(ForkedJvm.HEARTBEAT);
+                    out.flush();
+                }
+            } catch (IOException ex) {
+                cancel();
+                synchronized (ABANDONED_LOCK) {
+                    if (!state.compareAndSet(OPEN, LOST)) {
+                        // the connection was closed by this worker
+                        return;
+                    }
+                    abandoned++;
+                }
+                LOGGER.warn(
+                        "Lost {}, interrupting the running test",
+                        socket.getRemoteSocketAddress());
+                thread.interrupt();
+                close(socket);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The connections to the workers that are not running a test. Connections
+ * that failed are removed from the pool.
+ *
+ * @author Thibault Debatty
+ */
+final class WorkerPool {
+
+    private final LinkedList<RemoteWorker> idle =
+            new LinkedList<RemoteWorker>();
+    private int alive;
+
+    /**
+     *
+     * @param addresses host:port of the workers (an address can be repeated
+     * to open several connections to the same worker)
+     * @param testcase
+     */
+    WorkerPool(final List<String> addresses, final Case testcase) {
+        for (String address : addresses) {
+            idle.add(new RemoteWorker(address, testcase));
+        }
+        alive = idle.size();
+    }
+
+    /**
+     * Wait for an idle worker.
+     * @return null if all workers were lost
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized RemoteWorker take() throws InterruptedException {
+        while (idle.isEmpty() && alive > 0) {
+            wait();
+        }
+        if (idle.isEmpty()) {
+            return null;
+        }
+        return idle.removeFirst();
+    }
+
+    /**
+     * Give a worker back to the pool.
+     * @param worker
+     */
+    synchronized void release(final RemoteWorker worker) {
+        idle.add(worker);
+        notifyAll();
+    }
+
+    /**
+     * Remove a worker that failed.
+     * @param worker
+     */
+    synchronized void lost(final RemoteWorker worker) {
+        worker.close();
+        alive--;
+        notifyAll();
+    }
+
+    /**
+     * Close all connections.
+     */
+    synchronized void close() {
+        for (RemoteWorker worker : idle) {
+            worker.close();
+        }
+        idle.clear();
+    }
+}
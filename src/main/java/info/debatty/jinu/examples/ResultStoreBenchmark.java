@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu.examples;
+
+import info.debatty.jinu.ResultStore;
+import info.debatty.jinu.TestFactory;
+import info.debatty.jinu.TestInterface;
+import info.debatty.jinu.TestResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compare the heap used to keep 10^6 results in a map of synchronized linked
+ * lists of TestResult objects (the layout used before ResultStore), and in a
+ * ResultStore.
+ *
+ * @author Thibault Debatty
+ */
+public final class ResultStoreBenchmark {
+
+    private static final int TESTS = 10;
+    private static final int PARAMS = 10;
+    private static final int ITERATIONS = 10000;
+    private static final int VALUES = 2;
+    private static final double MB = 1024 * 1024;
+
+    private ResultStoreBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args
+     */
+    public static void main(final String[] args) {
+
+        final List<TestFactory> tests = new ArrayList<TestFactory>();
+        for (int t = 0; t < TESTS; t++) {
+            tests.add(new TestFactory() {
+                public TestInterface newInstance() {
+                    return new DummyTest();
+                }
+            });
+        }
+
+        double[] param_values = new double[PARAMS];
+        for (int p = 0; p < PARAMS; p++) {
+            param_values[p] = p;
+        }
+
+        TestInterface test = new DummyTest();
+        Random rand = new Random();
+
+        // Objects
+        long before = usedMemory();
+        Map<String, List<TestResult>> objects =
+                new HashMap<String, List<TestResult>>();
+        for (int t = 0; t < TESTS; t++) {
+            for (int p = 0; p < PARAMS; p++) {
+                List<TestResult> list = Collections.synchronizedList(
+                        new LinkedList<TestResult>());
+                objects.put(t + "-" + p, list);
+                for (int i = 0; i < ITERATIONS; i++) {
+                    list.add(new TestResult(
+                            randomValues(rand),
+                            rand.nextInt(),
+                            test,
+                            param_values[p]));
+                }
+            }
+        }
+        long objects_memory = usedMemory() - before;
+        System.out.printf(
+                "TestResult objects : %.1f MB (%d bytes per result)%n",
+                objects_memory / MB,
+                objects_memory / (TESTS * PARAMS * ITERATIONS));
+        objects.clear();
+        objects = null;
+
+        // Columnar store
+        before = usedMemory();
+        ResultStore store = new ResultStore(tests, param_values);
+        for (int t = 0; t < TESTS; t++) {
+            for (int p = 0; p < PARAMS; p++) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    // the TestResult is garbage as soon as it is stored
+                    store.add(tests.get(t), new TestResult(
+                            randomValues(rand),
+                            rand.nextInt(),
+                            test,
+                            param_values[p]));
+                }
+            }
+        }
+        long store_memory = usedMemory() - before;
+        System.out.printf(
+                "ResultStore        : %.1f MB (%d bytes per result)%n",
+                store_memory / MB,
+                store_memory / store.size());
+    }
+
+    private static double[] randomValues(final Random rand) {
+        double[] values = new double[VALUES];
+        for (int v = 0; v < VALUES; v++) {
+            values[v] = rand.nextDouble();
+        }
+        return values;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Writes binary result files, then reads them back (mapped in small chunks)
+ * and converts them to and from CSV.
+ *
+ * @author Thibault Debatty
+ */
+public class BinarySinkTest extends TestCase {
+
+    private static final double[] PARAMS = {10, 20};
+    private static final int RESULTS = 11;
+    private static final int VALUES = 2;
+    private static final int RECORD_BYTES =
+            BinarySink.RECORD_BYTES + 8 * VALUES;
+
+    private final List<File> files = new LinkedList<File>();
+    private Case testcase;
+    private CaseResult report;
+    // row of the result that only has one value
+    private int short_row = 2;
+
+    @Override
+    protected final void setUp() {
+        testcase = new Case();
+        testcase.setDescription("Binary round trip");
+        testcase.setParamValues(PARAMS);
+        testcase.addTest(new AlphaFactory());
+        testcase.addTest(new BetaFactory());
+        report = new CaseResult();
+        report.setTestcase(testcase);
+        report.setWarmups(new HashMap<FactoryAndValue, Integer>());
+    }
+
+    @Override
+    protected final void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Chunks hold 3 records: rows are read correctly in every chunk,
+     * including the last (partial) one.
+     * @throws IOException if a file cannot be written or read
+     */
+    public final void testChunks() throws IOException {
+        String binary = writeBinary();
+        BinaryReader reader = new BinaryReader(binary, 3 * RECORD_BYTES + 5);
+        try {
+            assertEquals(RESULTS, reader.size());
+            assertEquals(VALUES, reader.getValuesCount());
+            assertEquals("Binary round trip", reader.getDescription());
+            for (int row = 0; row < RESULTS; row++) {
+                assertRow(reader, row);
+            }
+
+            try {
+                reader.getTestIndex(RESULTS);
+                fail("Read a row after the end of the file");
+            } catch (IndexOutOfBoundsException ex) {
+                // expected
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * A truncated last record is ignored.
+     * @throws IOException if a file cannot be written or read
+     */
+    public final void testTruncatedRecord() throws IOException {
+        String binary = writeBinary();
+        RandomAccessFile raf = new RandomAccessFile(binary, "rw");
+        raf.setLength(raf.length() - RECORD_BYTES / 2);
+        raf.close();
+
+        BinaryReader reader = new BinaryReader(binary, 3 * RECORD_BYTES);
+        try {
+            assertEquals(RESULTS - 1, reader.size());
+            assertRow(reader, RESULTS - 2);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The CSV written by the reader has the same lines as the one written
+     * by CsvSink, and converting it back gives the same records.
+     * @throws IOException if a file cannot be written or read
+     */
+    public final void testCsvRoundTrip() throws IOException {
+        // CsvSink does not pad the short results
+        short_row = -1;
+        String csv_sink = newFile(".csv");
+        CsvSink sink = new CsvSink(csv_sink);
+        sink.open(report);
+        for (int row = 0; row < RESULTS; row++) {
+            sink.write(result(row));
+        }
+        sink.close(report);
+
+        BinaryReader reader = new BinaryReader(writeBinary());
+        String csv = newFile(".csv");
+        try {
+            reader.writeCsv(csv);
+        } finally {
+            reader.close();
+        }
+
+        List<String> expected = readLines(csv_sink);
+        List<String> lines = readLines(csv);
+        // CsvSink also writes the warmup and failure counts
+        assertEquals(expected.subList(0, lines.size()), lines);
+
+        String binary = newFile(".bin");
+        BinarySink.fromCsv(csv, binary);
+        BinaryReader converted = new BinaryReader(binary);
+        try {
+            assertEquals(RESULTS, converted.size());
+            assertEquals("Binary round trip", converted.getDescription());
+            for (int row = 0; row < RESULTS; row++) {
+                assertEquals(-1, converted.getIteration(row));
+                assertRow(converted, row);
+            }
+        } finally {
+            converted.close();
+        }
+    }
+
+    /**
+     * CSV files written by older versions of jinu only have the test, the
+     * input value and the runtime (ms) before the values.
+     * @throws IOException if a file cannot be written or read
+     */
+    public final void testLegacyCsv() throws IOException {
+        String csv = newFile(".csv");
+        InputStream in = getClass().getResourceAsStream("legacy.csv");
+        OutputStream out = new FileOutputStream(csv);
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        String binary = newFile(".bin");
+        BinarySink.fromCsv(csv, binary);
+        BinaryReader reader = new BinaryReader(binary);
+        try {
+            assertEquals(60, reader.size());
+            assertEquals("20170629112823", reader.getCaseId());
+            assertEquals("My test, with args: 0", reader.getDescription());
+            assertEquals(2, reader.getValuesCount());
+            assertEquals(
+                    Arrays.asList(
+                            "info.debatty.jinu.examples.DummyTest2",
+                            "info.debatty.jinu.examples.DummyTest"),
+                    Arrays.asList(reader.getTests()));
+
+            assertEquals("info.debatty.jinu.examples.DummyTest2",
+                    reader.getTest(0));
+            assertEquals(3.0, reader.getParamValue(0));
+            assertEquals(0, reader.getWallTimeNanos(0));
+            assertEquals(153.0666031935062, reader.getValue(0, 0));
+            assertEquals(1.0, reader.getValue(0, 1));
+
+            long last = reader.size() - 1;
+            assertEquals("info.debatty.jinu.examples.DummyTest",
+                    reader.getTest(last));
+            assertEquals(4.0, reader.getParamValue(last));
+            assertEquals(333000000L, reader.getWallTimeNanos(last));
+            assertEquals(0, reader.getCpuTimeNanos(last));
+            assertEquals(0, reader.getUserTimeNanos(last));
+            assertEquals(0, reader.getAllocated(last));
+            assertEquals(0, reader.getGcCount(last));
+            assertEquals(0, reader.getGcTime(last));
+            assertEquals(1, reader.getOperations(last));
+            assertEquals(-1, reader.getIteration(last));
+            assertEquals(153.33610873689142, reader.getValue(last, 0));
+            assertEquals(155.0, reader.getValue(last, 1));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private String writeBinary() throws IOException {
+        String filename = newFile(".bin");
+        BinarySink sink = new BinarySink(filename);
+        sink.open(report);
+        for (int row = 0; row < RESULTS; row++) {
+            sink.write(result(row));
+        }
+        sink.close(report);
+        return filename;
+    }
+
+    /**
+     * The result of this row: all fields are derived from the row, and the
+     * short row only has one value (padded with NaN).
+     */
+    private TestResult result(final int row) {
+        TestFactory factory = testcase.getTests().get(row % 2);
+        double[] values = {row, -row};
+        if (row == short_row) {
+            values = new double[]{row};
+        }
+        return new TestResult(
+                values,
+                new Probe(1000000L * row + 1, 1000L * row, 0, row, row % 3,
+                        row % 5, row % 7 + 1),
+                factory,
+                factory.newInstance(),
+                PARAMS[row % PARAMS.length],
+                row);
+    }
+
+    private void assertRow(final BinaryReader reader, final int row) {
+        String name = row % 2 == 0
+                ? AlphaTest.class.getName() : BetaTest.class.getName();
+        assertEquals(name, reader.getTest(row));
+        assertEquals(PARAMS[row % PARAMS.length], reader.getParamValue(row));
+        assertEquals(1000000L * row + 1, reader.getWallTimeNanos(row));
+        assertEquals(1000L * row, reader.getCpuTimeNanos(row));
+        assertEquals(0, reader.getUserTimeNanos(row));
+        assertEquals(row, reader.getAllocated(row));
+        assertEquals(row % 3, reader.getGcCount(row));
+        assertEquals(row % 5, reader.getGcTime(row));
+        assertEquals(row % 7 + 1, reader.getOperations(row));
+        assertEquals((double) row, reader.getValue(row, 0));
+        if (row == short_row) {
+            assertTrue(Double.isNaN(reader.getValue(row, 1)));
+        } else {
+            assertEquals((double) -row, reader.getValue(row, 1));
+        }
+        if (reader.getIteration(row) >= 0) {
+            assertEquals(row, reader.getIteration(row));
+        }
+    }
+
+    private String newFile(final String extension) throws IOException {
+        File file = File.createTempFile("jinu", extension);
+        files.add(file);
+        return file.getPath();
+    }
+
+    private static List<String> readLines(final String filename)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(filename), Charset.forName("UTF-8")));
+        LinkedList<String> lines = new LinkedList<String>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Result files identify the tests by their class.
+     */
+    private static class AlphaFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new AlphaTest();
+        }
+    }
+
+    private static class BetaFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new BetaTest();
+        }
+    }
+
+    private static class AlphaTest implements TestInterface {
+
+        public double[] run(final double param) {
+            return new double[]{param};
+        }
+    }
+
+    private static class BetaTest implements TestInterface {
+
+        public double[] run(final double param) {
+            return new double[]{param};
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Runs that fail are recorded as failures, in this JVM or in child JVMs.
+ *
+ * @author Thibault Debatty
+ */
+public class FailureTest extends TestCase {
+
+    private static final double[] PARAMS = {1, 2};
+    private static final int ITERATIONS = 2;
+
+    /**
+     * A test that returns null is a failure.
+     * @throws Exception if the case fails
+     */
+    public final void testNullValues() throws Exception {
+        runNullTest(ForkMode.NONE);
+    }
+
+    /**
+     * A test that returns null in a child JVM is a failure, and the child
+     * keeps serving the following runs.
+     * @throws Exception if the case fails
+     */
+    public final void testNullValuesInChildJvm() throws Exception {
+        runNullTest(ForkMode.PER_TEST);
+    }
+
+    private void runNullTest(final ForkMode fork_mode) throws Exception {
+        Case testcase = new Case();
+        testcase.commitToGit(false);
+        testcase.setBaseDir(tempDir());
+        testcase.setParamValues(PARAMS);
+        testcase.setIterations(ITERATIONS);
+        testcase.setForkMode(fork_mode);
+        testcase.addTest(new NullFactory());
+        CountingSink sink = new CountingSink();
+        testcase.addSink(sink);
+
+        testcase.run();
+
+        assertEquals(0, sink.count);
+        assertEquals(PARAMS.length * ITERATIONS, sink.failures);
+        for (TestFailures failures : sink.report.getFailures()) {
+            assertEquals(
+                    NullTest.class.getName() + " returned null",
+                    failures.getError());
+        }
+    }
+
+    private static String tempDir() throws IOException {
+        File dir = File.createTempFile("jinu", "");
+        dir.delete();
+        dir.mkdir();
+        return dir.getPath() + File.separator;
+    }
+
+    private static class NullFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new NullTest();
+        }
+    }
+
+    private static class NullTest implements TestInterface {
+
+        public double[] run(final double param) {
+            return null;
+        }
+    }
+
+    private static class CountingSink implements ResultSink {
+
+        private int count;
+        private int failures = -1;
+        private CaseResult report;
+
+        public void open(final CaseResult report) {
+        }
+
+        public synchronized void write(final TestResult result) {
+            count++;
+        }
+
+        public void close(final CaseResult report) {
+            this.report = report;
+            failures = report.getFailureCount();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ * Writes journals, then reads them back (possibly truncated) as a resumed
+ * case would.
+ *
+ * @author Thibault Debatty
+ */
+public class JournalTest extends TestCase {
+
+    private static final double[] PARAMS = {1, 2};
+    private static final int PROBE_BYTES = 48;
+    private static final int ITERATIONS = 2;
+    private static final int WARMUP = 3;
+
+    private final List<TestFactory> tests = Arrays.asList(
+            new AlphaFactory(), new BetaFactory());
+    private File file;
+    private CaseResult report;
+
+    @Override
+    protected final void setUp() throws IOException {
+        file = File.createTempFile("jinu", Journal.EXTENSION);
+        report = new CaseResult();
+        report.setTestcase(new Case());
+    }
+
+    @Override
+    protected final void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * All runs are read back, with their values and metrics.
+     * @throws IOException if the journal cannot be written
+     */
+    public final void testReadBack() throws IOException {
+        Journal journal = newJournal();
+        journal.open(report);
+        journal.write(result(0, 1, 0, 1.5));
+        journal.write(result(1, 2, 0, 2.5));
+        journal.write(result(0, 2, 1, 3.5));
+        journal.close(report);
+
+        Journal resumed = newJournal();
+        List<TestResult> results = resumed.read();
+        assertEquals(3, results.size());
+
+        TestResult last = results.get(2);
+        assertSame(tests.get(0), last.getFactory());
+        assertEquals(2.0, last.getParamValue());
+        assertEquals(1, last.getIteration());
+        assertEquals(3.5, last.getValues()[0]);
+        assertEquals(1, last.getValues().length);
+        assertEquals(1000L * 3, last.getWallTimeNanos());
+        assertEquals(3L, last.getGcCount());
+        assertEquals(4L, last.getOperations());
+
+        assertTrue(resumed.isDone(0, 0, 0));
+        assertTrue(resumed.isDone(0, 1, 1));
+        assertTrue(resumed.isDone(1, 0, 1));
+        assertFalse(resumed.isDone(1, 1, 1));
+    }
+
+    /**
+     * A truncated last record is discarded, removed when the journal is
+     * opened again, and the following runs are appended after the last
+     * complete record.
+     * @throws IOException if the journal cannot be written
+     */
+    public final void testTruncatedRecordIsDiscarded() throws IOException {
+        Journal journal = newJournal();
+        journal.open(report);
+        journal.write(result(0, 1, 0, 1.5));
+        journal.write(result(1, 1, 0, 2.5));
+        journal.close(report);
+
+        // cut the last record in the middle of its metrics
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - PROBE_BYTES / 2);
+        raf.close();
+
+        Journal resumed = newJournal();
+        assertEquals(1, resumed.read().size());
+        assertTrue(resumed.isDone(0, 0, 0));
+        assertFalse(resumed.isDone(0, 1, 0));
+
+        resumed.open(report);
+        resumed.write(result(1, 1, 0, 2.5));
+        resumed.write(result(1, 2, 0, 4.5));
+        resumed.close(report);
+
+        List<TestResult> results = newJournal().read();
+        assertEquals(3, results.size());
+        assertEquals(1.5, results.get(0).getValues()[0]);
+        assertEquals(2.5, results.get(1).getValues()[0]);
+        assertEquals(4.5, results.get(2).getValues()[0]);
+        assertSame(tests.get(1), results.get(2).getFactory());
+    }
+
+    /**
+     * A journal that was written by a case with other tests cannot be
+     * resumed, but its matching runs can be read (as a baseline).
+     * @throws IOException if the journal cannot be written
+     */
+    public final void testOtherCase() throws IOException {
+        Journal journal = newJournal();
+        journal.open(report);
+        journal.write(result(0, 1, 0, 1.5));
+        journal.write(result(1, 2, 0, 2.5));
+        journal.close(report);
+
+        Journal other = new Journal(
+                file, Arrays.<TestFactory>asList(new BetaFactory()), PARAMS);
+        try {
+            other.read();
+            fail("Journal of another case was resumed");
+        } catch (IOException ex) {
+            // expected
+        }
+
+        List<TestResult> results = other.readMatching();
+        assertEquals(1, results.size());
+        assertEquals(2.5, results.get(0).getValues()[0]);
+    }
+
+    /**
+     * A resumed case warms up again the test and param values that still
+     * have runs, and only those.
+     * @throws Exception if the case fails
+     */
+    public final void testResumeWarmsUpPendingRuns() throws Exception {
+        TestFactory factory = new CountingFactory();
+        Case testcase = new Case();
+        testcase.commitToGit(false);
+        testcase.setParamValues(PARAMS);
+        testcase.setIterations(ITERATIONS);
+        testcase.setWarmupIterations(WARMUP);
+        testcase.addTest(factory);
+        report.setTestcase(testcase);
+
+        // the interrupted run completed all iterations with the first param
+        Journal journal = new Journal(
+                file, Arrays.asList(factory), PARAMS);
+        journal.open(report);
+        for (int i = 0; i < ITERATIONS; i++) {
+            journal.write(new TestResult(
+                    new double[]{PARAMS[0]}, new Probe(), factory,
+                    factory.newInstance(), PARAMS[0], i));
+        }
+        journal.close(report);
+
+        final CaseResult[] resumed = new CaseResult[1];
+        testcase.addSink(new ResultSink() {
+
+            public void open(final CaseResult result) {
+            }
+
+            public void write(final TestResult result) {
+            }
+
+            public void close(final CaseResult result) {
+                resumed[0] = result;
+            }
+        });
+        CountingTest.CALLS.clear();
+        testcase.resume(file.getPath());
+
+        assertNull(CountingTest.CALLS.get(PARAMS[0]));
+        assertEquals(
+                WARMUP + ITERATIONS,
+                CountingTest.CALLS.get(PARAMS[1]).intValue());
+        assertEquals(0, resumed[0].getWarmup(factory, PARAMS[0]));
+        assertEquals(WARMUP, resumed[0].getWarmup(factory, PARAMS[1]));
+    }
+
+    private Journal newJournal() {
+        return new Journal(file, tests, PARAMS);
+    }
+
+    /**
+     * A result whose metrics are all derived from the value.
+     */
+    private TestResult result(
+            final int test_index,
+            final double param,
+            final int iteration,
+            final double value) {
+        long metric = (long) value;
+        TestFactory factory = tests.get(test_index);
+        return new TestResult(
+                new double[]{value},
+                new Probe(metric * 1000, metric, metric, metric, metric,
+                        metric, metric + 1),
+                factory,
+                factory.newInstance(),
+                param,
+                iteration);
+    }
+
+    /**
+     * Journals identify the tests by their class.
+     */
+    private static class AlphaFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new AlphaTest();
+        }
+    }
+
+    private static class BetaFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new BetaTest();
+        }
+    }
+
+    private static class AlphaTest implements TestInterface {
+
+        public double[] run(final double param) {
+            return new double[]{param};
+        }
+    }
+
+    private static class BetaTest implements TestInterface {
+
+        public double[] run(final double param) {
+            return new double[]{param};
+        }
+    }
+
+    private static class CountingFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new CountingTest();
+        }
+    }
+
+    /**
+     * Counts the calls (warmups and runs) with each param value.
+     */
+    private static class CountingTest implements TestInterface {
+
+        private static final Map<Double, Integer> CALLS =
+                new HashMap<Double, Integer>();
+
+        public double[] run(final double param) {
+            synchronized (CALLS) {
+                Integer count = CALLS.get(param);
+                CALLS.put(param, count == null ? 1 : count + 1);
+            }
+            return new double[]{param};
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.jinu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Bucket boundaries and percentiles of latency histograms.
+ *
+ * @author Thibault Debatty
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    private static final int BUCKETS = 3712;
+    private static final int LINEAR = 128;
+    private static final int HALF = 64;
+
+    /**
+     * The buckets are contiguous, cover all the positive longs, and are at
+     * most 1/64 wide (relative to their lowest value).
+     */
+    public final void testBucketBounds() {
+        long expected_low = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            assertEquals(expected_low, low(i));
+            assertTrue(high(i) >= low(i));
+            if (i >= LINEAR) {
+                assertTrue(64 * (high(i) - low(i) + 1) <= low(i));
+            }
+            expected_low = high(i) + 1;
+        }
+        assertEquals(Long.MAX_VALUE, high(BUCKETS - 1));
+    }
+
+    /**
+     * The lowest and highest values of each bucket fall in the same bucket,
+     * whose upper bound is reported, and the next value falls in the next
+     * bucket.
+     */
+    public final void testEachBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.reset();
+            histogram.record(low(i));
+            histogram.record(high(i));
+            assertEquals("bucket " + i, high(i),
+                    histogram.getValueAtPercentile(50));
+
+            if (i < BUCKETS - 1) {
+                histogram.reset();
+                histogram.record(high(i));
+                histogram.record(high(i) + 1);
+                assertEquals("bucket " + i, high(i),
+                        histogram.getValueAtPercentile(50));
+                assertEquals(high(i) + 1,
+                        histogram.getValueAtPercentile(100));
+            }
+        }
+    }
+
+    /**
+     * Small values have their own bucket, hence exact percentiles.
+     */
+    public final void testExactPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 100; value >= 1; value--) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1E-9);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50, histogram.getP50());
+        assertEquals(90, histogram.getP90());
+        assertEquals(99, histogram.getP99());
+        assertEquals(100, histogram.getP999());
+        assertEquals(100, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Larger percentiles are at most 1/64 above the exact value, and never
+     * above the maximum.
+     */
+    public final void testApproximatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int count = 100000;
+        long scale = 1000;
+        for (int i = 1; i <= count; i++) {
+            histogram.record(i * scale);
+        }
+
+        double[] percentiles = {1, 25, 50, 90, 99, 99.9, 99.99, 100};
+        for (double percentile : percentiles) {
+            long exact = (long) Math.ceil(percentile / 100 * count) * scale;
+            long value = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + value, value >= exact);
+            assertTrue(percentile + ": " + value, value <= exact * 65 / 64);
+        }
+        assertEquals(count * scale, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Negative latencies are recorded as 0, an empty histogram reports 0.
+     */
+    public final void testEmptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getP99());
+        assertTrue(Double.isNaN(histogram.getMean()));
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getP50());
+    }
+
+    /**
+     * A copy only holds the used buckets, but can still record and merge
+     * larger values.
+     */
+    public final void testCopyAndAdd() {
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(10);
+        LatencyHistogram copy = small.copy();
+        copy.record(Long.MAX_VALUE);
+        assertEquals(2, copy.getCount());
+        assertEquals(Long.MAX_VALUE, copy.getValueAtPercentile(100));
+
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(1000000);
+        LatencyHistogram merged = small.copy();
+        merged.add(other);
+        merged.add(small);
+        assertEquals(3, merged.getCount());
+        assertEquals(10, merged.getMin());
+        assertEquals(10, merged.getP50());
+        assertEquals(1000000, merged.getMax());
+        assertEquals(1000000, merged.getValueAtPercentile(100));
+    }
+
+    /**
+     * Histograms (and null) are transferred between JVMs.
+     * @throws IOException if the histogram cannot be written or read
+     */
+    public final void testWriteRead() throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value > 0; value *= 3) {
+            histogram.record(value);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        LatencyHistogram.write(out, histogram);
+        LatencyHistogram.write(out, null);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        LatencyHistogram read = LatencyHistogram.read(in);
+
+        assertEquals(histogram.getCount(), read.getCount());
+        assertEquals(histogram.getMin(), read.getMin());
+        assertEquals(histogram.getMax(), read.getMax());
+        assertEquals(histogram.getMean(), read.getMean());
+        for (int percentile = 0; percentile <= 100; percentile++) {
+            assertEquals(histogram.getValueAtPercentile(percentile),
+                    read.getValueAtPercentile(percentile));
+        }
+        assertNull(LatencyHistogram.read(in));
+    }
+
+    /**
+     * Lowest value of a bucket, computed independently of the histogram:
+     * values below 128 have their own bucket, then each power of 2 is split
+     * in 64 buckets.
+     */
+    private static long low(final int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / HALF + 1;
+        long sub = (index - LINEAR) % HALF + HALF;
+        return sub << shift;
+    }
+
+    private static long high(final int index) {
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return low(index + 1) - 1;
+    }
+}
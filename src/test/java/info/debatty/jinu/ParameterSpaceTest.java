@@ -0,0 +1,326 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Designs sampled from a parameter space, and cases that run on them.
+ *
+ * @author Thibault Debatty
+ */
+public class ParameterSpaceTest extends TestCase {
+
+    private static final double[] LOW_HIGH = {-1, 0, 1};
+
+    /**
+     * All combinations, the last axis varying fastest.
+     */
+    public final void testFullFactorial() {
+        ParameterSpace space = new ParameterSpace()
+                .addAxis("a", 1, 2)
+                .addAxis("b", 10, 20, 30);
+        List<ParameterPoint> points = space.fullFactorial();
+
+        assertEquals(6, space.size());
+        assertEquals(6, points.size());
+        assertEquals(1.0, points.get(2).get("a"));
+        assertEquals(30.0, points.get(2).get("b"));
+        assertEquals(2.0, points.get(3).get("a"));
+        assertEquals(10.0, points.get(3).get("b"));
+        assertEquals(6, new HashSet<ParameterPoint>(points).size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(i, points.get(i).getIndex());
+        }
+    }
+
+    /**
+     * 2^(4-1) design: the fourth axis is generated by the product of the
+     * three others (defining relation I = ABCD).
+     */
+    public final void testHalfFraction() {
+        List<ParameterPoint> points = space(4).fractionalFactorial(1);
+        assertEquals(8, points.size());
+        for (ParameterPoint point : points) {
+            double product = 1;
+            for (double value : point.getValues()) {
+                product *= value;
+            }
+            assertEquals(1.0, product);
+        }
+        assertOrthogonal(points);
+
+        // the base axes form a full factorial
+        HashSet<String> base = new HashSet<String>();
+        for (ParameterPoint point : points) {
+            base.add(point.get("x0") + " " + point.get("x1") + " "
+                    + point.get("x2"));
+        }
+        assertEquals(8, base.size());
+    }
+
+    /**
+     * 2^(7-4) design (resolution III): main effects are still balanced and
+     * orthogonal, and only the first and last levels are used.
+     */
+    public final void testSaturatedFraction() {
+        List<ParameterPoint> points = space(7).fractionalFactorial(4);
+        assertEquals(8, points.size());
+        assertOrthogonal(points);
+        for (ParameterPoint point : points) {
+            for (double value : point.getValues()) {
+                assertTrue(value == -1 || value == 1);
+            }
+        }
+    }
+
+    /**
+     * With 3 base axes, only 4 generators have at least 2 factors.
+     */
+    public final void testFractionTooLarge() {
+        try {
+            space(8).fractionalFactorial(5);
+            fail("Fraction with too few generators was accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        try {
+            space(3).fractionalFactorial(3);
+            fail("Empty base was accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Each stratum of each axis is used exactly once, and the design only
+     * depends on the seed.
+     */
+    public final void testLatinHypercubeStrata() {
+        double[] levels = new double[12];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = i;
+        }
+        ParameterSpace space = new ParameterSpace()
+                .addAxis("a", levels)
+                .addAxis("b", levels)
+                .addAxis("c", 0, 1, 2, 3);
+        List<ParameterPoint> points = space.latinHypercube(12, 42);
+        assertEquals(12, points.size());
+
+        HashMap<Double, Integer> counts_c = new HashMap<Double, Integer>();
+        HashSet<Double> seen_a = new HashSet<Double>();
+        HashSet<Double> seen_b = new HashSet<Double>();
+        for (ParameterPoint point : points) {
+            assertTrue(seen_a.add(point.get("a")));
+            assertTrue(seen_b.add(point.get("b")));
+            Integer count = counts_c.get(point.get("c"));
+            counts_c.put(point.get("c"), count == null ? 1 : count + 1);
+        }
+        // 12 samples on 4 levels: each level is used 3 times
+        assertEquals(4, counts_c.size());
+        for (int count : counts_c.values()) {
+            assertEquals(3, count);
+        }
+
+        assertEquals(points, space.latinHypercube(12, 42));
+        assertFalse(points.equals(space.latinHypercube(12, 43)));
+    }
+
+    /**
+     * Each test receives the point of its run (and not only its index).
+     * @throws Exception if the case fails
+     */
+    public final void testPointsAreHandedToTests() throws Exception {
+        runOnPoints(ForkMode.NONE);
+    }
+
+    /**
+     * Child JVMs receive the points with the serialized case.
+     * @throws Exception if the case fails
+     */
+    public final void testPointsAreHandedToForkedTests() throws Exception {
+        runOnPoints(ForkMode.PER_ITERATION);
+    }
+
+    /**
+     * A point fixture provider builds the fixtures from the points.
+     * @throws Exception if the case fails
+     */
+    public final void testFixturesAreBuiltFromPoints() throws Exception {
+        runOnPoints(ForkMode.NONE, new SumFixtureFactory(), new SumProvider());
+    }
+
+    private void runOnPoints(final ForkMode fork_mode) throws Exception {
+        runOnPoints(fork_mode, new SumFactory(), null);
+    }
+
+    private void runOnPoints(
+            final ForkMode fork_mode,
+            final TestFactory factory,
+            final FixtureProvider<?> provider) throws Exception {
+        final List<ParameterPoint> points = new ParameterSpace()
+                .addAxis("a", 1, 2, 3)
+                .addAxis("b", 5, 7)
+                .fullFactorial();
+
+        Case testcase = new Case();
+        testcase.commitToGit(false);
+        testcase.setBaseDir(tempDir());
+        testcase.setIterations(2);
+        testcase.setParameterPoints(points);
+        testcase.setForkMode(fork_mode);
+        testcase.addTest(factory);
+        if (provider != null) {
+            testcase.setFixtureProvider(provider);
+        }
+        final HashSet<Double> checked = new HashSet<Double>();
+        testcase.addSink(new ResultSink() {
+
+            public void open(final CaseResult report) {
+            }
+
+            public void write(final TestResult result) {
+                ParameterPoint point =
+                        points.get((int) result.getParamValue());
+                assertEquals(
+                        point.get("a") + point.get("b"),
+                        result.getValues()[0]);
+                checked.add(result.getParamValue());
+            }
+
+            public void close(final CaseResult report) {
+            }
+        });
+
+        testcase.run();
+        assertEquals(points.size(), checked.size());
+    }
+
+    /**
+     * Points must be given as a whole design, in order.
+     */
+    public final void testPointsOutOfOrder() {
+        List<ParameterPoint> points = space(2).fullFactorial();
+        try {
+            new Case().setParameterPoints(points.subList(1, 3));
+            fail("Points out of order were accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * A space with this number of axes, with levels -1, 0 and 1.
+     */
+    private static ParameterSpace space(final int axes) {
+        ParameterSpace space = new ParameterSpace();
+        for (int i = 0; i < axes; i++) {
+            space.addAxis("x" + i, LOW_HIGH);
+        }
+        return space;
+    }
+
+    /**
+     * Each column is balanced, and each pair of columns is orthogonal.
+     */
+    private static void assertOrthogonal(final List<ParameterPoint> points) {
+        int axes = points.get(0).getValues().length;
+        for (int i = 0; i < axes; i++) {
+            double sum = 0;
+            for (ParameterPoint point : points) {
+                sum += point.getValues()[i];
+            }
+            assertEquals(0.0, sum);
+
+            for (int j = i + 1; j < axes; j++) {
+                double dot = 0;
+                for (ParameterPoint point : points) {
+                    dot += point.getValues()[i] * point.getValues()[j];
+                }
+                assertEquals(0.0, dot);
+            }
+        }
+    }
+
+    private static String tempDir() throws IOException {
+        File dir = File.createTempFile("jinu", "");
+        dir.delete();
+        dir.mkdir();
+        return dir.getPath() + File.separator;
+    }
+
+    private static class SumFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new SumTest();
+        }
+    }
+
+    /**
+     * Returns a + b.
+     */
+    private static class SumTest extends PointTest {
+
+        public double[] run(final ParameterPoint point) {
+            return new double[]{point.get("a") + point.get("b")};
+        }
+    }
+
+    private static class SumProvider extends PointFixtureProvider<Double> {
+
+        public Double build(final ParameterPoint point) {
+            return point.get("a") + point.get("b");
+        }
+    }
+
+    private static class SumFixtureFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new SumFixtureTest();
+        }
+    }
+
+    private static class SumFixtureTest extends PointTest
+            implements FixtureTest<Double> {
+
+        private Double fixture;
+
+        public void setFixture(final Double fixture) {
+            this.fixture = fixture;
+        }
+
+        public double[] run(final ParameterPoint point) {
+            return new double[]{fixture};
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Timeouts of the runs of a case.
+ *
+ * @author Thibault Debatty
+ */
+public class TimeoutTest extends TestCase {
+
+    private static final long TIMEOUT = 200;
+    private static final long SLOW = 2 * TIMEOUT;
+
+    /**
+     * Building the fixture and setting up the test do not count against the
+     * timeout, only the measured run does.
+     * @throws Exception if the case fails
+     */
+    public final void testSlowPreparationDoesNotTimeOut() throws Exception {
+        Case testcase = new Case();
+        testcase.commitToGit(false);
+        testcase.setBaseDir(tempDir());
+        testcase.setParamValues(new double[]{1, 2});
+        testcase.setIterations(2);
+        testcase.setTimeout(TIMEOUT);
+        testcase.setFixtureProvider(new SlowProvider());
+        testcase.addTest(new SlowSetupFactory());
+        CountingSink sink = new CountingSink();
+        testcase.addSink(sink);
+
+        testcase.run();
+
+        assertEquals(0, sink.timeouts);
+        assertEquals(4, sink.count);
+    }
+
+    private static String tempDir() throws IOException {
+        File dir = File.createTempFile("jinu", "");
+        dir.delete();
+        dir.mkdir();
+        return dir.getPath() + File.separator;
+    }
+
+    private static class SlowProvider implements FixtureProvider<Double> {
+
+        public Double build(final double param) throws Exception {
+            Thread.sleep(SLOW);
+            return param;
+        }
+    }
+
+    private static class SlowSetupFactory implements TestFactory {
+
+        public TestInterface newInstance() {
+            return new SlowSetupTest();
+        }
+    }
+
+    private static class SlowSetupTest
+            implements FixtureTest<Double>, LifecycleTest {
+
+        private Double fixture;
+
+        public void setFixture(final Double fixture) {
+            this.fixture = fixture;
+        }
+
+        public void setup(final double param) throws Exception {
+            Thread.sleep(SLOW);
+        }
+
+        public void teardown() {
+        }
+
+        public double[] run(final double param) {
+            return new double[]{fixture};
+        }
+    }
+
+    private static class CountingSink implements ResultSink {
+
+        private int count;
+        private int timeouts = -1;
+
+        public void open(final CaseResult report) {
+        }
+
+        public synchronized void write(final TestResult result) {
+            count++;
+        }
+
+        public void close(final CaseResult report) {
+            timeouts = report.getTimeoutCount();
+        }
+    }
+}
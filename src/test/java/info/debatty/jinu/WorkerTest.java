@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.debatty.jinu;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Runs cases on several workers, listening on the loopback interface of
+ * this JVM.
+ *
+ * @author Thibault Debatty
+ */
+public class WorkerTest extends TestCase {
+
+    private static final int ITERATIONS = 4;
+    private static final double[] PARAMS = {1, 2, 3};
+    private static final CountDownLatch INTERRUPTED = new CountDownLatch(1);
+
+    private final HashSet<ServerSocket> servers = new HashSet<ServerSocket>();
+
+    /**
+     * All runs are distributed over the workers.
+     * @throws Exception if the case fails
+     */
+    public final void testLoopbackWorkers() throws Exception {
+        LoopbackCase testcase = new LoopbackCase();
+        testcase.setWorkers(startWorker(), startWorker());
+        testcase.setBaseDir(tempDir());
+        CollectingSink sink = new CollectingSink();
+        testcase.addSink(sink);
+
+        testcase.run();
+
+        assertEquals(ITERATIONS * PARAMS.length, sink.count);
+        assertEquals(2, sink.hosts.size());
+    }
+
+    /**
+     * A run that times out is interrupted on the worker, and the worker is
+     * used for the following runs.
+     * @throws Exception if the case fails
+     */
+    public final void testTimedOutRunIsInterrupted() throws Exception {
+        SleepCase testcase = new SleepCase();
+        testcase.setWorkers(startWorker());
+        testcase.setBaseDir(tempDir());
+        CollectingSink sink = new CollectingSink();
+        testcase.addSink(sink);
+
+        testcase.run();
+
+        assertTrue(INTERRUPTED.await(10, TimeUnit.SECONDS));
+        // the first param value times out, the others are measured
+        assertEquals(PARAMS.length - 1, sink.count);
+    }
+
+    @Override
+    protected final void tearDown() throws IOException {
+        for (ServerSocket server : servers) {
+            server.close();
+        }
+    }
+
+    private String startWorker() throws IOException {
+        final ServerSocket server = new ServerSocket(0);
+        servers.add(server);
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    Worker.listen(server);
+                } catch (IOException ex) {
+                    // the server socket was closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return "127.0.0.1:" + server.getLocalPort();
+    }
+
+    private static String tempDir() throws IOException {
+        File dir = File.createTempFile("jinu", "");
+        dir.delete();
+        dir.mkdir();
+        return dir.getPath() + File.separator;
+    }
+
+    /**
+     * Counts the results, and the workers that produced them.
+     */
+    private static class CollectingSink implements ResultSink {
+
+        private int count = 0;
+        private final HashSet<String> hosts = new HashSet<String>();
+
+        public void open(final CaseResult report) {
+        }
+
+        public void write(final TestResult result) {
+            count++;
+            hosts.add(result.getHost());
+        }
+
+        public void close(final CaseResult report) {
+        }
+    }
+
+    /**
+     * Instantiated by the workers.
+     */
+    public static class LoopbackCase extends Case {
+
+        /**
+         *
+         */
+        public LoopbackCase() {
+            commitToGit(false);
+            setIterations(ITERATIONS);
+            setParamValues(PARAMS);
+            addTest(new TestFactory() {
+
+                public TestInterface newInstance() {
+                    return new SleepTest(0);
+                }
+            });
+        }
+    }
+
+    /**
+     * The run with param 1 never ends (unless it is interrupted).
+     */
+    public static class SleepCase extends Case {
+
+        /**
+         *
+         */
+        public SleepCase() {
+            commitToGit(false);
+            setIterations(1);
+            setParamValues(PARAMS);
+            setTimeout(500);
+            addTest(new TestFactory() {
+
+                public TestInterface newInstance() {
+                    return new SleepTest(1);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sleeps during 100ms, or forever with the given param value.
+     */
+    private static class SleepTest implements TestInterface {
+
+        private final double forever;
+
+        SleepTest(final double forever) {
+            this.forever = forever;
+        }
+
+        public double[] run(final double param) throws Exception {
+            if (param != forever) {
+                Thread.sleep(100);
+                return new double[]{param};
+            }
+
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException ex) {
+                INTERRUPTED.countDown();
+                throw ex;
+            }
+            return new double[]{param};
+        }
+    }
+}